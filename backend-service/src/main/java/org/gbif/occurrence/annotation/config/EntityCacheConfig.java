@@ -0,0 +1,109 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.occurrence.annotation.config;
+
+import org.gbif.occurrence.annotation.mapper.EntityCache;
+import org.gbif.occurrence.annotation.mapper.ProjectMapper;
+import org.gbif.occurrence.annotation.mapper.RuleMapper;
+import org.gbif.occurrence.annotation.mapper.RulesetMapper;
+import org.gbif.occurrence.annotation.model.Project;
+import org.gbif.occurrence.annotation.model.Rule;
+import org.gbif.occurrence.annotation.model.Ruleset;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * The caches of rules, projects and rulesets read by id, used by the get endpoints and the
+ * permission checks of the writes. Their statistics are published as "rule", "project" and
+ * "ruleset".
+ */
+@Configuration
+public class EntityCacheConfig {
+  // a rough size of an entity without its variable length fields
+  private static final int ENTRY_BYTES = 512;
+  private static final int ARRAY_ELEMENT_BYTES = 48;
+
+  @Value("${annotation.entity-cache.max-bytes:33554432}")
+  private long maxBytes;
+
+  @Value("${annotation.entity-cache.expiry-ms:60000}")
+  private long expiryMs;
+
+  @Bean
+  public EntityCache<Rule> ruleCache(RuleMapper ruleMapper, MeterRegistry meterRegistry) {
+    return new EntityCache<>(
+        "rule",
+        ruleMapper::get,
+        rule ->
+            ENTRY_BYTES
+                + length(rule.getGeometry())
+                + length(rule.getGeometryWkb())
+                + length(rule.getHoles())
+                + ARRAY_ELEMENT_BYTES
+                    * (length(rule.getSupportedBy()) + length(rule.getContestedBy())),
+        maxBytes,
+        Duration.ofMillis(expiryMs),
+        meterRegistry);
+  }
+
+  @Bean
+  public EntityCache<Project> projectCache(
+      ProjectMapper projectMapper, MeterRegistry meterRegistry) {
+    return new EntityCache<>(
+        "project",
+        projectMapper::get,
+        project ->
+            ENTRY_BYTES
+                + length(project.getName())
+                + length(project.getDescription())
+                + ARRAY_ELEMENT_BYTES * length(project.getMembers()),
+        maxBytes,
+        Duration.ofMillis(expiryMs),
+        meterRegistry);
+  }
+
+  @Bean
+  public EntityCache<Ruleset> rulesetCache(
+      RulesetMapper rulesetMapper, MeterRegistry meterRegistry) {
+    return new EntityCache<>(
+        "ruleset",
+        rulesetMapper::get,
+        ruleset ->
+            ENTRY_BYTES
+                + length(ruleset.getName())
+                + length(ruleset.getDescription())
+                + ARRAY_ELEMENT_BYTES * length(ruleset.getMembers()),
+        maxBytes,
+        Duration.ofMillis(expiryMs),
+        meterRegistry);
+  }
+
+  private static int length(String value) {
+    return value == null ? 0 : value.length();
+  }
+
+  private static int length(byte[] value) {
+    return value == null ? 0 : value.length;
+  }
+
+  private static int length(Object[] value) {
+    return value == null ? 0 : value.length;
+  }
+}
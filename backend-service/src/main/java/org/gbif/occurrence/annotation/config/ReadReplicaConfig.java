@@ -0,0 +1,75 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.occurrence.annotation.config;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Routes read-only transactions to a read replica when annotation.datasource.read.url is set.
+ *
+ * <p>Everything else, including the migrations, writes and the reads that follow a write in the
+ * same request, uses the primary configured by spring.datasource. The connection is chosen lazily,
+ * once the transaction has declared whether it is read-only, so endpoints opt in with
+ * {@code @Transactional(readOnly = true)}. Without a replica those endpoints read from the primary.
+ */
+@Configuration
+@ConditionalOnProperty("annotation.datasource.read.url")
+public class ReadReplicaConfig {
+
+  @Bean
+  @ConfigurationProperties("spring.datasource.hikari")
+  public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+    return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+  }
+
+  /** The replica, using the credentials of the primary unless others are given. */
+  @Bean
+  @ConfigurationProperties("annotation.datasource.read.hikari")
+  public HikariDataSource readDataSource(
+      DataSourceProperties properties,
+      @Value("${annotation.datasource.read.url}") String url,
+      @Value("${annotation.datasource.read.username:#{null}}") String username,
+      @Value("${annotation.datasource.read.password:#{null}}") String password) {
+    HikariDataSource dataSource =
+        properties.initializeDataSourceBuilder().type(HikariDataSource.class).url(url).build();
+    if (username != null) {
+      dataSource.setUsername(username);
+      dataSource.setPassword(password);
+    }
+    dataSource.setReadOnly(true);
+    return dataSource;
+  }
+
+  @Bean
+  @Primary
+  public DataSource dataSource(
+      @Qualifier("primaryDataSource") DataSource primary,
+      @Qualifier("readDataSource") DataSource read) {
+    LazyConnectionDataSourceProxy routing = new LazyConnectionDataSourceProxy(primary);
+    routing.setReadOnlyDataSource(read);
+    return routing;
+  }
+}
@@ -16,6 +16,9 @@ package org.gbif.occurrence.annotation.controller;
 import org.springframework.security.access.annotation.Secured;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.ServletWebRequest;
 
 interface Controller<T> {
   T get(int id);
@@ -30,4 +33,15 @@ interface Controller<T> {
     Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
     return authentication.getName();
   }
+
+  /**
+   * Sets the ETag of the current response, returning true if the request already holds it, in
+   * which case the response is a 304 and the caller should return null without reading the data.
+   */
+  default boolean notModified(String etag) {
+    ServletRequestAttributes attributes =
+        (ServletRequestAttributes) RequestContextHolder.currentRequestAttributes();
+    return new ServletWebRequest(attributes.getRequest(), attributes.getResponse())
+        .checkNotModified(etag);
+  }
 }
@@ -0,0 +1,65 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.occurrence.annotation.controller;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Opaque cursors for keyset paging. A cursor identifies the last row of a page, and the next page
+ * is read from the rows ordered after it by (created, id), so deep pages cost the same as the
+ * first and do not shift as rows are added.
+ */
+final class Cursors {
+  /** The response header carrying the cursor of the next page, when there may be one. */
+  static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+  private Cursors() {}
+
+  static String encode(int id) {
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(Integer.toString(id).getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Returns the id of the row the cursor identifies, or null for no cursor.
+   *
+   * @throws IllegalArgumentException if the cursor is not one we issued
+   */
+  static Integer decode(String cursor) {
+    if (cursor == null || cursor.isEmpty()) {
+      return null;
+    }
+    try {
+      return Integer.valueOf(
+          new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Invalid cursor: " + cursor);
+    }
+  }
+
+  /** Sets the cursor of the next page if the page is full, and so may not be the last. */
+  static <T> List<T> withNext(
+      List<T> page, int limit, ToIntFunction<T> id, HttpServletResponse response) {
+    if (!page.isEmpty() && page.size() == limit) {
+      response.setHeader(NEXT_CURSOR_HEADER, encode(id.applyAsInt(page.get(page.size() - 1))));
+    }
+    return page;
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.occurrence.annotation.controller;
+
+import org.gbif.occurrence.annotation.mapper.DataVersionMapper;
+import org.gbif.occurrence.annotation.model.DataVersion;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * The versions of the data that the ETags of the read endpoints are built from. A read is tagged
+ * with the version of the narrowest scope it covers: one ruleset, one project or everything.
+ *
+ * <p>The version of everything is the sum of all versions, as every write bumps at least one, so
+ * writes to different projects and rulesets do not wait on a common row. A write to neither bumps
+ * one of a few stripes of everything instead.
+ *
+ * <p>The versions are bumped in the transaction of each write, so they commit with the data, and
+ * are held in memory so that tagging a response costs nothing. Writes through this instance are
+ * seen once they commit, and those through other instances once the versions are next refreshed.
+ *
+ * <p>With a read replica, the read-only endpoints instead read the version in their own
+ * transaction before the data, so a response from a lagging replica is never tagged with a version
+ * newer than its content.
+ */
+@Component
+public class DataVersions {
+  private static final String ALL = "ALL";
+  private static final String PROJECT = "PROJECT";
+  private static final String RULESET = "RULESET";
+  private static final int ALL_STRIPES = 16;
+
+  @Autowired private DataVersionMapper dataVersionMapper;
+
+  @Value("${annotation.datasource.read.url:}")
+  private String readUrl;
+
+  private volatile Map<String, Long> versions = Map.of();
+  private volatile long total;
+
+  @PostConstruct
+  @Scheduled(
+      initialDelayString = "${annotation.data-version.refresh-ms:1000}",
+      fixedDelayString = "${annotation.data-version.refresh-ms:1000}")
+  public void refresh() {
+    merge(dataVersionMapper.list());
+  }
+
+  /** Records a change to the data of the project and ruleset, either of which may be null. */
+  public void bump(Integer projectId, Integer rulesetId) {
+    bump(Collections.singleton(projectId), Collections.singleton(rulesetId));
+  }
+
+  /** Records a change to the data of the projects and rulesets, ignoring any null ids. */
+  public void bump(Collection<Integer> projectIds, Collection<Integer> rulesetIds) {
+    Set<Integer> projects = ids(projectIds);
+    Set<Integer> rulesets = ids(rulesetIds);
+    Integer allStripe =
+        projects.isEmpty() && rulesets.isEmpty()
+            ? ThreadLocalRandom.current().nextInt(ALL_STRIPES)
+            : null;
+    bumped(dataVersionMapper.bump(projects, rulesets, null, allStripe));
+  }
+
+  /** Records a change to the project and so to each of its rulesets. */
+  public void bumpProject(int projectId) {
+    bumped(dataVersionMapper.bump(Set.of(projectId), Set.of(), projectId, null));
+  }
+
+  /** Returns a weak ETag for data of the ruleset if given, else the project, else everything. */
+  public String etag(Integer projectId, Integer rulesetId) {
+    String kind = rulesetId != null ? RULESET : projectId != null ? PROJECT : ALL;
+    int id = rulesetId != null ? rulesetId : projectId != null ? projectId : 0;
+    String key = key(kind, id);
+    long version;
+    if (!readUrl.isEmpty() && TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+      Long read = kind.equals(ALL) ? dataVersionMapper.total() : dataVersionMapper.get(kind, id);
+      version = read != null ? read : 0L;
+    } else {
+      version = kind.equals(ALL) ? total : versions.getOrDefault(key, 0L);
+    }
+    return "W/\"" + key + "-" + version + "\"";
+  }
+
+  /** Merges the versions returned by a bump once its transaction, if any, has committed. */
+  private void bumped(List<DataVersion> bumped) {
+    AfterCommit.run(() -> merge(bumped));
+  }
+
+  /** Keeps the newest of each version, as a refresh may have read the database before a bump. */
+  private synchronized void merge(Collection<DataVersion> read) {
+    Map<String, Long> merged = new HashMap<>(versions);
+    for (DataVersion version : read) {
+      merged.merge(key(version.getKind(), version.getId()), version.getVersion(), Math::max);
+    }
+    versions = merged;
+    total = merged.values().stream().mapToLong(Long::longValue).sum();
+  }
+
+  private static String key(String kind, int id) {
+    return kind + "-" + id;
+  }
+
+  private static Set<Integer> ids(Collection<Integer> ids) {
+    Set<Integer> nonNull = new HashSet<>(ids);
+    nonNull.remove(null);
+    return nonNull;
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.occurrence.annotation.controller;
+
+import org.gbif.occurrence.annotation.mapper.EntityCache;
+import org.gbif.occurrence.annotation.mapper.RuleMapper;
+import org.gbif.occurrence.annotation.matcher.RuleIndex;
+import org.gbif.occurrence.annotation.model.Rule;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Deletes the rules left live in deleted projects and rulesets. A cascading delete commits the
+ * rules of a large project or ruleset in batches, and should one fail the project or ruleset stays
+ * deleted with some of its rules live until the delete is repeated or this sweep runs.
+ */
+@Slf4j
+@Component
+public class OrphanedRuleSweep {
+  @Autowired private RuleMapper ruleMapper;
+  @Autowired private RuleIndex ruleIndex;
+  @Autowired private EntityCache<Rule> ruleCache;
+  @Autowired private DataVersions dataVersions;
+
+  @Value("${annotation.delete.batch-size:1000}")
+  private int batchSize;
+
+  /** Returns the number of rules deleted. */
+  @Scheduled(
+      initialDelayString = "${annotation.delete.sweep-interval-ms:600000}",
+      fixedDelayString = "${annotation.delete.sweep-interval-ms:600000}")
+  public synchronized int sweep() {
+    Set<Integer> projectIds = new HashSet<>();
+    Set<Integer> rulesetIds = new HashSet<>();
+    int deleted = 0;
+    try {
+      List<Rule> batch;
+      do {
+        batch = ruleMapper.deleteOrphans(batchSize);
+        for (Rule rule : batch) {
+          ruleCache.invalidate(rule.getId());
+          ruleIndex.remove(rule.getId());
+          projectIds.add(rule.getProjectId());
+          rulesetIds.add(rule.getRulesetId());
+        }
+        deleted += batch.size();
+      } while (batch.size() == batchSize);
+    } finally {
+      if (deleted > 0) {
+        log.info("Deleted {} rules left in deleted projects and rulesets", deleted);
+        dataVersions.bump(projectIds, rulesetIds);
+      }
+    }
+    return deleted;
+  }
+}
@@ -13,62 +13,100 @@
  */
 package org.gbif.occurrence.annotation.controller;
 
+import org.gbif.occurrence.annotation.mapper.EntityCache;
 import org.gbif.occurrence.annotation.mapper.ProjectMapper;
 import org.gbif.occurrence.annotation.mapper.RuleMapper;
 import org.gbif.occurrence.annotation.mapper.RulesetMapper;
+import org.gbif.occurrence.annotation.matcher.RuleIndex;
+import org.gbif.occurrence.annotation.model.DeleteCounts;
 import org.gbif.occurrence.annotation.model.Project;
+import org.gbif.occurrence.annotation.model.Rule;
+import org.gbif.occurrence.annotation.model.Ruleset;
 
 import java.util.Arrays;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.security.access.annotation.Secured;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import lombok.extern.slf4j.Slf4j;
 
 import static org.gbif.occurrence.annotation.controller.AuthAdvice.assertCreatorOrAdmin;
 
+@Slf4j
 @Tag(name = "Occurrence annotation projects")
 @RestController
-@CrossOrigin(origins = "*")
+@CrossOrigin(
+    origins = "*",
+    exposedHeaders = {Cursors.NEXT_CURSOR_HEADER, HttpHeaders.ETAG})
 @RequestMapping("/occurrence/experimental/annotation/project")
 public class ProjectController implements Controller<Project> {
   @Autowired private ProjectMapper projectMapper;
   @Autowired private RulesetMapper rulesetMapper;
   @Autowired private RuleMapper ruleMapper;
+  @Autowired private RuleIndex ruleIndex;
+  @Autowired private EntityCache<Project> projectCache;
+  @Autowired private EntityCache<Ruleset> rulesetCache;
+  @Autowired private EntityCache<Rule> ruleCache;
+  @Autowired private DataVersions dataVersions;
+
+  @Value("${annotation.delete.batch-size:1000}")
+  private int deleteBatchSize;
 
   @Operation(summary = "List all projects that are not deleted")
   @Parameter(name = "limit", description = "The limit for paging", example = "100")
   @Parameter(name = "offset", description = "The offset for paging", example = "0")
+  @Parameter(
+      name = "cursor",
+      description =
+          "Continues from a previous page, using the value of its X-Next-Cursor response header")
   @Parameter(
       name = "member",
       description =
           "Filter projects by member username (returns only projects where this user is a member)",
       example = "jwaller")
   @GetMapping
+  @Transactional(readOnly = true)
   public List<Project> list(
       @RequestParam(required = false) Integer limit,
       @RequestParam(required = false) Integer offset,
-      @RequestParam(required = false) String member) {
+      @RequestParam(required = false) String member,
+      @RequestParam(required = false) String cursor,
+      HttpServletResponse response) {
+    if (notModified(dataVersions.etag(null, null))) {
+      return null;
+    }
     int limitInt = limit == null ? 100 : limit;
     int offsetInt = offset == null ? 0 : offset;
-    return projectMapper.list(limitInt, offsetInt, member);
+    List<Project> projects =
+        projectMapper.list(limitInt, offsetInt, member, Cursors.decode(cursor));
+    return Cursors.withNext(projects, limitInt, Project::getId, response);
   }
 
   @Operation(summary = "Get a single project (may be deleted)")
   @GetMapping("/{id}")
   @Override
   public Project get(@PathVariable(value = "id") int id) {
-    return projectMapper.get(id);
+    String etag = dataVersions.etag(id, null);
+    if (notModified(etag)) {
+      return null;
+    }
+    return projectCache.get(id, etag);
   }
 
   @Operation(summary = "Create a new project")
   @PostMapping
   @Secured("USER")
+  @Transactional
   @Override
   public Project create(@Valid @RequestBody Project project) {
     // Validate name is not empty or blank
@@ -79,15 +117,18 @@ public class ProjectController implements Controller<Project> {
     String username = getLoggedInUser();
     project.setCreatedBy(username);
     project.setMembers(new String[] {username}); // creator is always a member
-    projectMapper.create(project); // mybatis sets id
-    return projectMapper.get(project.getId());
+    Project created = projectMapper.create(project);
+    dataVersions.bump(created.getId(), null);
+    AfterCommit.run(() -> projectCache.put(created.getId(), created));
+    return created;
   }
 
   @Operation(summary = "Update a project")
   @PutMapping("/{id}")
   @Secured("USER")
+  @Transactional
   public Project update(@PathVariable(value = "id") int id, @Valid @RequestBody Project project) {
-    Project existing = projectMapper.get(id);
+    Project existing = projectCache.get(id);
 
     // only members can update
     if (existing == null || !Arrays.asList(existing.getMembers()).contains(getLoggedInUser())) {
@@ -102,9 +143,15 @@ public class ProjectController implements Controller<Project> {
     String[] members = project.getMembers();
     project.setModifiedBy(getLoggedInUser());
     project.setId(id); // defensive
-    projectMapper.update(project);
-    rulesetMapper.updateMembersByProject(id, members);
-    return projectMapper.get(id);
+    Project updated = projectMapper.update(project);
+    List<Integer> rulesetIds = rulesetMapper.updateMembersByProject(id, members);
+    dataVersions.bumpProject(id);
+    AfterCommit.run(
+        () -> {
+          projectCache.put(id, updated);
+          rulesetCache.invalidateAll(rulesetIds);
+        });
+    return updated;
   }
 
   @Operation(summary = "Logical delete a project and all associated rules")
@@ -112,14 +159,34 @@ public class ProjectController implements Controller<Project> {
   @Secured({"USER", "REGISTRY_ADMIN"})
   @Override
   public Project delete(@PathVariable(value = "id") int id) {
-    Project existing = projectMapper.get(id);
+    Project existing = projectCache.get(id);
     assertCreatorOrAdmin(existing.getCreatedBy());
     String username = getLoggedInUser();
-    projectMapper.delete(id, username);
     // admin or project creator can delete anyone's rules within the project
-    rulesetMapper.deleteByProject(id, username);
-    ruleMapper.deleteByProject(id, username);
+    DeleteCounts counts = projectMapper.deleteCascade(id, username, deleteBatchSize);
+    projectCache.invalidate(id);
+    rulesetCache.invalidateAll(Arrays.asList(counts.getRulesetIds()));
+    ruleCache.invalidateAll(Arrays.asList(counts.getRuleIds()));
+    try {
+      // the rules of a large project are deleted in batches, so that they are not all locked at
+      // once. Should a batch fail, the rules left are deleted by repeating the delete or by the
+      // OrphanedRuleSweep.
+      List<Integer> batch = Arrays.asList(counts.getRuleIds());
+      while (batch.size() == deleteBatchSize) {
+        batch = ruleMapper.deleteByProject(id, username, deleteBatchSize);
+        ruleCache.invalidateAll(batch);
+        counts.setRules(counts.getRules() + batch.size());
+      }
+      log.info(
+          "Deleted project {} with {} rulesets and {} rules",
+          id,
+          counts.getRulesets(),
+          counts.getRules());
+    } finally {
+      ruleIndex.sync();
+      dataVersions.bumpProject(id);
+    }
     // comments are not findable, so aren't deleted
-    return projectMapper.get(id);
+    return projectCache.get(id);
   }
 }
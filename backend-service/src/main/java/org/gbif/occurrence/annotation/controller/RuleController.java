@@ -14,14 +14,36 @@
 package org.gbif.occurrence.annotation.controller;
 
 import org.gbif.occurrence.annotation.mapper.CommentMapper;
+import org.gbif.occurrence.annotation.mapper.EntityCache;
 import org.gbif.occurrence.annotation.mapper.RuleMapper;
+import org.gbif.occurrence.annotation.matcher.DownloadClassifier;
+import org.gbif.occurrence.annotation.matcher.InvertedPolygons;
+import org.gbif.occurrence.annotation.matcher.RuleIndex;
+import org.gbif.occurrence.annotation.matcher.RuleMatcher;
+import org.gbif.occurrence.annotation.model.BasisOfRecordMask;
+import org.gbif.occurrence.annotation.model.Classification;
 import org.gbif.occurrence.annotation.model.Comment;
+import org.gbif.occurrence.annotation.model.Occurrence;
 import org.gbif.occurrence.annotation.model.Rule;
+import org.gbif.occurrence.annotation.model.YearRange;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Stream;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.security.access.annotation.Secured;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -33,24 +55,47 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
 
 import static org.gbif.occurrence.annotation.controller.AuthAdvice.assertCreatorOrAdmin;
 
 @Tag(name = "Occurrence annotation rules")
 @RestController
-@CrossOrigin(origins = "*")
+@CrossOrigin(
+    origins = "*",
+    exposedHeaders = {Cursors.NEXT_CURSOR_HEADER, HttpHeaders.ETAG})
 @RequestMapping("/occurrence/experimental/annotation/rule")
 public class RuleController implements Controller<Rule> {
+  // rules inserted by each statement of a batch create, well within the bind parameter limit
+  private static final int CREATE_BATCH_SIZE = 1000;
+
   @Autowired private RuleMapper ruleMapper;
+  @Autowired private EntityCache<Rule> ruleCache;
   @Autowired private CommentMapper commentMapper;
+  @Autowired private RuleIndex ruleIndex;
+  @Autowired private RuleMatcher ruleMatcher;
+  @Autowired private DownloadClassifier downloadClassifier;
+  @Autowired private ObjectMapper objectMapper;
+  @Autowired private Validator validator;
+  @Autowired private TransactionTemplate transactionTemplate;
+  @Autowired private DataVersions dataVersions;
+
+  @Value("${annotation.classify.max-records:100000}")
+  private int maxClassifyRecords;
 
   @Operation(
       summary =
-          "List all rules that are not deleted, optionally filtered by taxonKey, datasetKey, rulesetId, basisOfRecord, yearRange, createdBy, supportedBy, contestedBy and containing the comment text")
+          "List all rules that are not deleted, optionally filtered by taxonKey, datasetKey, rulesetId, basisOfRecord, yearRange, year, createdBy, supportedBy, contestedBy and containing the comment text")
   @Parameter(name = "taxonKey", description = "Filters by taxonKey")
   @Parameter(
       name = "contextKey",
@@ -68,6 +113,9 @@ public class RuleController implements Controller<Rule> {
       name = "yearRange",
       description =
           "Filters by year range (e.g., '1000,2025', '*,1990', '1000,*'). Use 'null' to find rules with no yearRange")
+  @Parameter(
+      name = "year",
+      description = "Filters to rules with a yearRange containing the given year (bounds inclusive)")
   @Parameter(name = "createdBy", description = "Filters by the username who created the rule")
   @Parameter(name = "supportedBy", description = "Filters by rules supported by the given username")
   @Parameter(name = "contestedBy", description = "Filters by rules contested by the given username")
@@ -80,7 +128,20 @@ public class RuleController implements Controller<Rule> {
       description = "Filters to rules with a non-deleted comment containing the given text")
   @Parameter(name = "limit", description = "The limit for paging")
   @Parameter(name = "offset", description = "The offset for paging")
+  @Parameter(
+      name = "cursor",
+      description =
+          "Continues from a previous page, using the value of its X-Next-Cursor response header")
+  @Parameter(
+      name = "projection",
+      description =
+          "Either full (the default) or summary, which omits the geometry and the lists of supporting and contesting users")
+  @Parameter(
+      name = "geometryFormat",
+      description =
+          "The format of the returned geometries, either wkt (the default) or geojson")
   @GetMapping
+  @Transactional(readOnly = true)
   public List<Rule> list(
       @RequestParam(required = false) Integer taxonKey,
       @RequestParam(required = false) String datasetKey,
@@ -89,30 +150,65 @@ public class RuleController implements Controller<Rule> {
       @RequestParam(required = false) String[] basisOfRecord,
       @RequestParam(required = false) Boolean basisOfRecordNegated,
       @RequestParam(required = false) String yearRange,
+      @RequestParam(required = false) Integer year,
       @RequestParam(required = false) String geometry,
       @RequestParam(required = false) String createdBy,
       @RequestParam(required = false) String supportedBy,
       @RequestParam(required = false) String contestedBy,
       @RequestParam(required = false) String comment,
       @RequestParam(required = false) Integer limit,
-      @RequestParam(required = false) Integer offset) {
+      @RequestParam(required = false) Integer offset,
+      @RequestParam(required = false) String cursor,
+      @RequestParam(required = false) String projection,
+      @RequestParam(required = false) String geometryFormat,
+      HttpServletResponse response) {
+    if (notModified(dataVersions.etag(projectId, rulesetId))) {
+      return null;
+    }
     int limitInt = limit == null ? 100 : limit;
     int offsetInt = offset == null ? 0 : offset;
-    return ruleMapper.list(
-        taxonKey,
-        datasetKey,
-        rulesetId,
-        projectId,
-        basisOfRecord,
-        basisOfRecordNegated,
-        yearRange,
-        geometry,
-        createdBy,
-        supportedBy,
-        contestedBy,
-        comment,
-        limitInt,
-        offsetInt);
+    List<Rule> rules =
+        ruleMapper.list(
+            taxonKey,
+            datasetKey,
+            rulesetId,
+            projectId,
+            basisOfRecord,
+            basisOfRecordNegated,
+            yearRange,
+            year,
+            geometry,
+            createdBy,
+            supportedBy,
+            contestedBy,
+            comment,
+            limitInt,
+            offsetInt,
+            Cursors.decode(cursor),
+            isSummary(projection),
+            geometryFormat(geometryFormat));
+    return Cursors.withNext(rules, limitInt, Rule::getId, response);
+  }
+
+  private static boolean isSummary(String projection) {
+    if (projection == null || projection.equalsIgnoreCase("full")) {
+      return false;
+    }
+    if (projection.equalsIgnoreCase("summary")) {
+      return true;
+    }
+    throw new IllegalArgumentException("Unknown projection: " + projection);
+  }
+
+  private static Rule.GEOMETRY_FORMAT geometryFormat(String format) {
+    if (format == null) {
+      return Rule.GEOMETRY_FORMAT.WKT;
+    }
+    try {
+      return Rule.GEOMETRY_FORMAT.valueOf(format.toUpperCase());
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Unknown geometryFormat: " + format);
+    }
   }
 
   @Operation(summary = "Get rules created by the current logged-in user")
@@ -126,28 +222,39 @@ public class RuleController implements Controller<Rule> {
       @RequestParam(required = false) String[] basisOfRecord,
       @RequestParam(required = false) Boolean basisOfRecordNegated,
       @RequestParam(required = false) String yearRange,
+      @RequestParam(required = false) Integer year,
       @RequestParam(required = false) String geometry,
       @RequestParam(required = false) String comment,
       @RequestParam(required = false) Integer limit,
-      @RequestParam(required = false) Integer offset) {
+      @RequestParam(required = false) Integer offset,
+      @RequestParam(required = false) String cursor,
+      @RequestParam(required = false) String projection,
+      @RequestParam(required = false) String geometryFormat,
+      HttpServletResponse response) {
     int limitInt = limit == null ? 100 : limit;
     int offsetInt = offset == null ? 0 : offset;
     String currentUser = getLoggedInUser();
-    return ruleMapper.list(
-        taxonKey,
-        datasetKey,
-        rulesetId,
-        projectId,
-        basisOfRecord,
-        basisOfRecordNegated,
-        yearRange,
-        geometry,
-        currentUser, // createdBy = current user
-        null, // supportedBy
-        null, // contestedBy
-        comment,
-        limitInt,
-        offsetInt);
+    List<Rule> rules =
+        ruleMapper.list(
+            taxonKey,
+            datasetKey,
+            rulesetId,
+            projectId,
+            basisOfRecord,
+            basisOfRecordNegated,
+            yearRange,
+            year,
+            geometry,
+            currentUser, // createdBy = current user
+            null, // supportedBy
+            null, // contestedBy
+            comment,
+            limitInt,
+            offsetInt,
+            Cursors.decode(cursor),
+            isSummary(projection),
+            geometryFormat(geometryFormat));
+    return Cursors.withNext(rules, limitInt, Rule::getId, response);
   }
 
   @Operation(summary = "Get rules supported by the current logged-in user")
@@ -161,28 +268,39 @@ public class RuleController implements Controller<Rule> {
       @RequestParam(required = false) String[] basisOfRecord,
       @RequestParam(required = false) Boolean basisOfRecordNegated,
       @RequestParam(required = false) String yearRange,
+      @RequestParam(required = false) Integer year,
       @RequestParam(required = false) String geometry,
       @RequestParam(required = false) String comment,
       @RequestParam(required = false) Integer limit,
-      @RequestParam(required = false) Integer offset) {
+      @RequestParam(required = false) Integer offset,
+      @RequestParam(required = false) String cursor,
+      @RequestParam(required = false) String projection,
+      @RequestParam(required = false) String geometryFormat,
+      HttpServletResponse response) {
     int limitInt = limit == null ? 100 : limit;
     int offsetInt = offset == null ? 0 : offset;
     String currentUser = getLoggedInUser();
-    return ruleMapper.list(
-        taxonKey,
-        datasetKey,
-        rulesetId,
-        projectId,
-        basisOfRecord,
-        basisOfRecordNegated,
-        yearRange,
-        geometry,
-        null, // createdBy
-        currentUser, // supportedBy = current user
-        null, // contestedBy
-        comment,
-        limitInt,
-        offsetInt);
+    List<Rule> rules =
+        ruleMapper.list(
+            taxonKey,
+            datasetKey,
+            rulesetId,
+            projectId,
+            basisOfRecord,
+            basisOfRecordNegated,
+            yearRange,
+            year,
+            geometry,
+            null, // createdBy
+            currentUser, // supportedBy = current user
+            null, // contestedBy
+            comment,
+            limitInt,
+            offsetInt,
+            Cursors.decode(cursor),
+            isSummary(projection),
+            geometryFormat(geometryFormat));
+    return Cursors.withNext(rules, limitInt, Rule::getId, response);
   }
 
   @Operation(summary = "Get rules contested by the current logged-in user")
@@ -196,52 +314,146 @@ public class RuleController implements Controller<Rule> {
       @RequestParam(required = false) String[] basisOfRecord,
       @RequestParam(required = false) Boolean basisOfRecordNegated,
       @RequestParam(required = false) String yearRange,
+      @RequestParam(required = false) Integer year,
       @RequestParam(required = false) String geometry,
       @RequestParam(required = false) String comment,
       @RequestParam(required = false) Integer limit,
-      @RequestParam(required = false) Integer offset) {
+      @RequestParam(required = false) Integer offset,
+      @RequestParam(required = false) String cursor,
+      @RequestParam(required = false) String projection,
+      @RequestParam(required = false) String geometryFormat,
+      HttpServletResponse response) {
     int limitInt = limit == null ? 100 : limit;
     int offsetInt = offset == null ? 0 : offset;
     String currentUser = getLoggedInUser();
-    return ruleMapper.list(
-        taxonKey,
-        datasetKey,
-        rulesetId,
-        projectId,
-        basisOfRecord,
-        basisOfRecordNegated,
-        yearRange,
-        geometry,
-        null, // createdBy
-        null, // supportedBy
-        currentUser, // contestedBy = current user
-        comment,
-        limitInt,
-        offsetInt);
+    List<Rule> rules =
+        ruleMapper.list(
+            taxonKey,
+            datasetKey,
+            rulesetId,
+            projectId,
+            basisOfRecord,
+            basisOfRecordNegated,
+            yearRange,
+            year,
+            geometry,
+            null, // createdBy
+            null, // supportedBy
+            currentUser, // contestedBy = current user
+            comment,
+            limitInt,
+            offsetInt,
+            Cursors.decode(cursor),
+            isSummary(projection),
+            geometryFormat(geometryFormat));
+    return Cursors.withNext(rules, limitInt, Rule::getId, response);
   }
 
   @Operation(summary = "Get a single rule (may be deleted)")
   @GetMapping("/{id}")
+  @Transactional(readOnly = true)
   @Override
   public Rule get(@PathVariable(value = "id") int id) {
-    return ruleMapper.get(id);
+    // the scope of the rule is not known until it is read, so it is tagged with everything
+    String etag = dataVersions.etag(null, null);
+    if (notModified(etag)) {
+      return null;
+    }
+    return ruleCache.get(id, etag);
   }
 
   @Operation(summary = "Create a new rule")
   @PostMapping
   @Secured("USER")
+  @Transactional
   @Override
   public Rule create(@Valid @RequestBody Rule rule) {
     rule.setCreatedBy(getLoggedInUser());
-    ruleMapper.create(rule); // id set by mybatis
-    return ruleMapper.get(rule.getId());
+    InvertedPolygons.classify(rule);
+    BasisOfRecordMask.validate(rule.getBasisOfRecord());
+    rule.setYearBounds(YearRange.toBounds(rule.getYearRange()));
+    Rule created = ruleMapper.create(rule);
+    dataVersions.bump(created.getProjectId(), created.getRulesetId());
+    AfterCommit.run(
+        () -> {
+          ruleCache.put(created.getId(), created);
+          ruleIndex.put(created);
+        });
+    return created;
+  }
+
+  @Operation(
+      summary =
+          "Create many rules, given as a JSON array. Either all rules are created or none are. Returns the ids of the created rules, in the order given.")
+  @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+  @Secured("USER")
+  public List<Integer> createBatch(@RequestBody List<Rule> rules) {
+    return createAll(rules.iterator());
+  }
+
+  @Operation(
+      summary =
+          "Create many rules, given as newline delimited JSON with one rule per line. Either all rules are created or none are. Returns the ids of the created rules, in the order given.")
+  @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+  @Secured("USER")
+  public List<Integer> createBatch(HttpServletRequest request) throws IOException {
+    try (MappingIterator<Rule> rules =
+        objectMapper.readerFor(Rule.class).readValues(request.getInputStream())) {
+      return createAll(rules);
+    }
+  }
+
+  /**
+   * Creates the rules in one transaction with the bump of the data versions, inserting them in
+   * multi-row statements as they are read, and then brings the rule index up to date.
+   */
+  private List<Integer> createAll(Iterator<Rule> rules) {
+    String username = getLoggedInUser();
+    Set<Integer> projectIds = new HashSet<>();
+    Set<Integer> rulesetIds = new HashSet<>();
+    List<Integer> ids =
+        transactionTemplate.execute(
+            status -> {
+              List<Integer> created = new ArrayList<>();
+              List<Rule> batch = new ArrayList<>(CREATE_BATCH_SIZE);
+              while (rules.hasNext()) {
+                Rule rule = rules.next();
+                validate(rule, created.size() + batch.size());
+                rule.setCreatedBy(username);
+                InvertedPolygons.classify(rule);
+                BasisOfRecordMask.validate(rule.getBasisOfRecord());
+                rule.setYearBounds(YearRange.toBounds(rule.getYearRange()));
+                projectIds.add(rule.getProjectId());
+                rulesetIds.add(rule.getRulesetId());
+                batch.add(rule);
+                if (batch.size() == CREATE_BATCH_SIZE || !rules.hasNext()) {
+                  ruleMapper.createBatch(batch); // ids set by mybatis
+                  batch.forEach(r -> created.add(r.getId()));
+                  batch.clear();
+                }
+              }
+              dataVersions.bump(projectIds, rulesetIds);
+              return created;
+            });
+    ruleIndex.sync();
+    return ids;
+  }
+
+  private void validate(Rule rule, int index) {
+    Set<ConstraintViolation<Rule>> violations = validator.validate(rule);
+    if (!violations.isEmpty()) {
+      ConstraintViolation<Rule> violation = violations.iterator().next();
+      String problem = violation.getPropertyPath() + " " + violation.getMessage();
+      throw new IllegalArgumentException("Rule " + index + " is invalid: " + problem);
+    }
   }
 
   @Operation(summary = "Update an existing rule")
   @PutMapping("/{id}")
   @Secured({"USER", "REGISTRY_ADMIN"})
+  @Transactional
   public Rule update(@PathVariable(value = "id") int id, @Valid @RequestBody Rule rule) {
-    Rule existing = ruleMapper.get(id);
+    Rule existing = ruleCache.get(id);
 
     // Check if rule exists and is not deleted
     if (existing == null) {
@@ -256,65 +468,144 @@ public class RuleController implements Controller<Rule> {
 
     // Set the ID from path parameter to ensure we're updating the correct rule
     rule.setId(id);
+    rule.setModifiedBy(getLoggedInUser());
+    InvertedPolygons.classify(rule);
+    BasisOfRecordMask.validate(rule.getBasisOfRecord());
+    rule.setYearBounds(YearRange.toBounds(rule.getYearRange()));
 
-    // Update the rule
-    ruleMapper.update(rule);
-
-    // Return the updated rule
-    return ruleMapper.get(id);
+    // Update the rule, which returns it as updated
+    Rule updated = ruleMapper.update(rule);
+    if (updated == null) {
+      ruleCache.invalidate(id);
+      throw new IllegalArgumentException("Cannot update a deleted rule");
+    }
+    // the rule may have moved between projects and rulesets
+    dataVersions.bump(
+        Arrays.asList(existing.getProjectId(), updated.getProjectId()),
+        Arrays.asList(existing.getRulesetId(), updated.getRulesetId()));
+    AfterCommit.run(
+        () -> {
+          ruleCache.put(id, updated);
+          ruleIndex.put(updated);
+        });
+    return updated;
   }
 
   @Operation(summary = "Logical delete a rule")
   @DeleteMapping("/{id}")
   @Secured({"USER", "REGISTRY_ADMIN"})
+  @Transactional
   @Override
   public Rule delete(@PathVariable(value = "id") int id) {
-    Rule existing = ruleMapper.get(id);
+    Rule existing = ruleCache.get(id);
     assertCreatorOrAdmin(existing.getCreatedBy());
-    ruleMapper.delete(id, getLoggedInUser());
-    return ruleMapper.get(id);
+    Rule deleted = ruleMapper.delete(id, getLoggedInUser());
+    dataVersions.bump(existing.getProjectId(), existing.getRulesetId());
+    AfterCommit.run(
+        () -> {
+          ruleCache.put(id, deleted);
+          ruleIndex.remove(id);
+        });
+    return deleted != null ? deleted : existing; // already deleted
   }
 
   @Operation(summary = "Adds support for a rule (removes any existing contest entry for the user)")
   @PostMapping("/{id}/support")
   @Secured("USER")
+  @Transactional
   public Rule support(@PathVariable(value = "id") int id) {
     String username = getLoggedInUser();
-    ruleMapper.addSupport(id, username);
-    ruleMapper.removeContest(id, username); // contest and support are mutually exclusive
-    return ruleMapper.get(id);
+    return voted(id, ruleMapper.vote(id, username, Rule.VOTE_TYPE.SUPPORT));
   }
 
   @Operation(summary = "Removes support for a rule for the user")
   @PostMapping("/{id}/removeSupport")
   @Secured("USER")
+  @Transactional
   public Rule removeSupport(@PathVariable(value = "id") int id) {
     String username = getLoggedInUser();
-    ruleMapper.removeSupport(id, username);
-    return ruleMapper.get(id);
+    return voted(id, ruleMapper.unvote(id, username, Rule.VOTE_TYPE.SUPPORT));
   }
 
   @Operation(summary = "Record that the user contests a rule (removes any support from the user)")
   @PostMapping("/{id}/contest")
   @Secured("USER")
+  @Transactional
   public Rule contest(@PathVariable(value = "id") int id) {
     String username = getLoggedInUser();
-    ruleMapper.addContest(id, username);
-    ruleMapper.removeSupport(id, username); // contest and support are mutually exclusive
-    return ruleMapper.get(id);
+    return voted(id, ruleMapper.vote(id, username, Rule.VOTE_TYPE.CONTEST));
   }
 
   @Operation(summary = "Removes the user contest list for the rule")
   @PostMapping("/{id}/removeContest")
   @Secured("USER")
+  @Transactional
   public Rule removeContest(@PathVariable(value = "id") int id) {
     String username = getLoggedInUser();
-    ruleMapper.removeContest(id, username);
-    return ruleMapper.get(id);
+    return voted(id, ruleMapper.unvote(id, username, Rule.VOTE_TYPE.CONTEST));
+  }
+
+  /**
+   * Reads the rule again once voted, as the vote statement cannot read the users voting
+   * consistently with the counts while others vote. The fresh read sees the vote and every vote
+   * committed before it, and is cached once the vote commits.
+   */
+  private Rule voted(int id, Rule vote) {
+    if (vote == null) {
+      ruleCache.invalidate(id);
+      return null;
+    }
+    Rule rule = ruleMapper.get(id);
+    dataVersions.bump(rule.getProjectId(), rule.getRulesetId());
+    AfterCommit.run(() -> ruleCache.put(id, rule));
+    return rule;
+  }
+
+  @Operation(
+      summary =
+          "Classify a batch of occurrences against all rules that are not deleted. Returns the matching rules for each record, in the order the records were given. Larger sets of records are classified as a download.")
+  @PostMapping("/classify")
+  @Secured("USER")
+  public List<Classification> classify(@RequestBody List<Occurrence> occurrences) {
+    if (occurrences.size() > maxClassifyRecords) {
+      throw new IllegalArgumentException(
+          "At most " + maxClassifyRecords + " records can be classified in one request");
+    }
+    return ruleMatcher.classify(occurrences);
+  }
+
+  @Operation(
+      summary =
+          "Classify every record of a GBIF download zip (SIMPLE_CSV or DWCA) given as the request body. The records are streamed back as tab separated values with is_suspicious, has_conflict and rule_ids columns appended.")
+  @PostMapping(
+      value = "/classify/download",
+      consumes = {"application/zip", MediaType.APPLICATION_OCTET_STREAM_VALUE})
+  @Secured("USER")
+  public void classifyDownload(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    prepareDownloadResponse(response);
+    downloadClassifier.classify(request.getInputStream(), response.getOutputStream());
+  }
+
+  @Operation(
+      summary =
+          "Classify every record of a GBIF download (SIMPLE_CSV or DWCA), fetched from the GBIF API by its key. The records are streamed back as tab separated values with is_suspicious, has_conflict and rule_ids columns appended.")
+  @GetMapping("/classify/download/{key}")
+  @Secured("USER")
+  public void classifyDownload(
+      @PathVariable(value = "key") String key, HttpServletResponse response) throws IOException {
+    prepareDownloadResponse(response);
+    downloadClassifier.classify(key, response.getOutputStream());
+  }
+
+  private static void prepareDownloadResponse(HttpServletResponse response) {
+    response.setContentType("text/tab-separated-values");
+    response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"annotated.tsv\"");
   }
 
   @Operation(summary = "Lists all non-deleted comments for a rule")
   @GetMapping("/{id}/comment")
+  @Transactional(readOnly = true)
   public List<Comment> listComment(@PathVariable(value = "id") int ruleId) {
     return commentMapper.list(ruleId);
   }
@@ -322,22 +613,34 @@ public class RuleController implements Controller<Rule> {
   @Operation(summary = "Adds a comment")
   @PostMapping("/{id}/comment")
   @Secured("USER")
+  @Transactional
   public Comment addComment(
       @PathVariable(value = "id") int id, @Valid @RequestBody Comment comment) {
     String username = getLoggedInUser();
     comment.setCreatedBy(username);
     comment.setRuleId(id);
-    commentMapper.create(comment); // id set by mybatis
-    return commentMapper.get(comment.getId());
+    Comment created = commentMapper.create(comment);
+    commented(id);
+    return created;
   }
 
   @Operation(summary = "Logical delete a comment")
   @DeleteMapping("/{id}/comment/{commentId}")
   @Secured({"USER", "REGISTRY_ADMIN"})
+  @Transactional
   public void deleteComment(@PathVariable(value = "commentId") int commentId) {
     Comment existing = commentMapper.get(commentId);
     assertCreatorOrAdmin(existing.getCreatedBy());
     commentMapper.delete(commentId, getLoggedInUser());
+    commented(existing.getRuleId());
+  }
+
+  /** Rules are listed by the text of their comments, so a comment changes the rule's scopes. */
+  private void commented(int ruleId) {
+    Rule rule = ruleCache.get(ruleId);
+    if (rule != null) {
+      dataVersions.bump(rule.getProjectId(), rule.getRulesetId());
+    }
   }
 
   @Operation(
@@ -349,14 +652,25 @@ public class RuleController implements Controller<Rule> {
   @Parameter(name = "rulesetId", description = "Filters by the given ruleset")
   @Parameter(name = "projectId", description = "Filters by the given project")
   @GetMapping("/metrics")
+  @Transactional(readOnly = true)
   public org.gbif.occurrence.annotation.model.RuleMetrics metrics(
       @RequestParam(required = false) String username,
       @RequestParam(required = false) Integer taxonKey,
       @RequestParam(required = false) String datasetKey,
       @RequestParam(required = false) Integer rulesetId,
       @RequestParam(required = false) Integer projectId) {
+    if (notModified(dataVersions.etag(projectId, rulesetId))) {
+      return null;
+    }
+    // the maintained metrics cover one filter at a time, so a combination reads the rules
+    long filters =
+        Stream.of(username, taxonKey, datasetKey, rulesetId, projectId)
+            .filter(Objects::nonNull)
+            .count();
     List<org.gbif.occurrence.annotation.model.RuleMetrics> results =
-        ruleMapper.metrics(username, taxonKey, datasetKey, rulesetId, projectId);
+        filters > 1
+            ? ruleMapper.metricsOfRules(username, taxonKey, datasetKey, rulesetId, projectId)
+            : ruleMapper.metrics(username, taxonKey, datasetKey, rulesetId, projectId);
     return results.isEmpty()
         ? new org.gbif.occurrence.annotation.model.RuleMetrics()
         : results.get(0);
@@ -13,70 +13,109 @@
  */
 package org.gbif.occurrence.annotation.controller;
 
+import org.gbif.occurrence.annotation.mapper.EntityCache;
 import org.gbif.occurrence.annotation.mapper.RuleMapper;
 import org.gbif.occurrence.annotation.mapper.RulesetMapper;
+import org.gbif.occurrence.annotation.matcher.RuleIndex;
+import org.gbif.occurrence.annotation.model.DeleteCounts;
+import org.gbif.occurrence.annotation.model.Rule;
 import org.gbif.occurrence.annotation.model.Ruleset;
 
 import java.util.Arrays;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.security.access.annotation.Secured;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import lombok.extern.slf4j.Slf4j;
 
 import static org.gbif.occurrence.annotation.controller.AuthAdvice.assertCreatorOrAdmin;
 
+@Slf4j
 @Tag(name = "Occurrence annotation rulesets")
 @RestController
-@CrossOrigin(origins = "*")
+@CrossOrigin(
+    origins = "*",
+    exposedHeaders = {Cursors.NEXT_CURSOR_HEADER, HttpHeaders.ETAG})
 @RequestMapping("/occurrence/experimental/annotation/ruleset")
 public class RulesetController implements Controller<Ruleset> {
   @Autowired private RulesetMapper rulesetMapper;
   @Autowired private RuleMapper ruleMapper;
+  @Autowired private RuleIndex ruleIndex;
+  @Autowired private EntityCache<Ruleset> rulesetCache;
+  @Autowired private EntityCache<Rule> ruleCache;
+  @Autowired private DataVersions dataVersions;
+
+  @Value("${annotation.delete.batch-size:1000}")
+  private int deleteBatchSize;
 
   @Operation(summary = "List all rulesets that are not deleted")
   @Parameter(name = "projectId", description = "Filters by projectId")
   @Parameter(name = "limit", description = "The limit for paging")
   @Parameter(name = "offset", description = "The offset for paging")
+  @Parameter(
+      name = "cursor",
+      description =
+          "Continues from a previous page, using the value of its X-Next-Cursor response header")
   @GetMapping
+  @Transactional(readOnly = true)
   public List<Ruleset> list(
       @RequestParam(required = false) Integer projectId,
       @RequestParam(required = false) Integer limit,
-      @RequestParam(required = false) Integer offset) {
+      @RequestParam(required = false) Integer offset,
+      @RequestParam(required = false) String cursor,
+      HttpServletResponse response) {
+    if (notModified(dataVersions.etag(projectId, null))) {
+      return null;
+    }
     int limitInt = limit == null ? 100 : limit;
     int offsetInt = offset == null ? 0 : offset;
-    return rulesetMapper.list(projectId, limitInt, offsetInt);
+    List<Ruleset> rulesets =
+        rulesetMapper.list(projectId, limitInt, offsetInt, Cursors.decode(cursor));
+    return Cursors.withNext(rulesets, limitInt, Ruleset::getId, response);
   }
 
   @Operation(summary = "Get a single ruleset (may be deleted)")
   @GetMapping("/{id}")
   @Override
   public Ruleset get(@PathVariable(value = "id") int id) {
-    return rulesetMapper.get(id);
+    String etag = dataVersions.etag(null, id);
+    if (notModified(etag)) {
+      return null;
+    }
+    return rulesetCache.get(id, etag);
   }
 
   @Operation(summary = "Create a new ruleset")
   @PostMapping
   @Secured("USER")
+  @Transactional
   @Override
   public Ruleset create(@Valid @RequestBody Ruleset ruleset) {
     String username = getLoggedInUser();
     ruleset.setCreatedBy(username);
     ruleset.setMembers(new String[] {username}); // creator is always a member
-    rulesetMapper.create(ruleset); // mybatis sets id
-    return rulesetMapper.get(ruleset.getId());
+    Ruleset created = rulesetMapper.create(ruleset);
+    dataVersions.bump(created.getProjectId(), created.getId());
+    AfterCommit.run(() -> rulesetCache.put(created.getId(), created));
+    return created;
   }
 
   @Operation(summary = "Update a ruleset")
   @PutMapping("/{id}")
   @Secured("USER")
+  @Transactional
   public Ruleset update(@PathVariable(value = "id") int id, @Valid @RequestBody Ruleset ruleset) {
-    Ruleset existing = rulesetMapper.get(id);
+    Ruleset existing = rulesetCache.get(id);
 
     // only members can update
     if (existing == null || !Arrays.asList(existing.getMembers()).contains(getLoggedInUser())) {
@@ -90,8 +129,11 @@ public class RulesetController implements Controller<Ruleset> {
 
     ruleset.setModifiedBy(getLoggedInUser());
     ruleset.setId(id); // defensive
-    rulesetMapper.update(ruleset);
-    return rulesetMapper.get(id);
+    Ruleset updated = rulesetMapper.update(ruleset);
+    // the ruleset may have moved between projects
+    dataVersions.bump(Arrays.asList(existing.getProjectId(), ruleset.getProjectId()), List.of(id));
+    AfterCommit.run(() -> rulesetCache.put(id, updated));
+    return updated;
   }
 
   @Operation(summary = "Logical delete a ruleset and all associated rules")
@@ -99,13 +141,27 @@ public class RulesetController implements Controller<Ruleset> {
   @Secured({"USER", "REGISTRY_ADMIN"})
   @Override
   public Ruleset delete(@PathVariable(value = "id") int id) {
-    Ruleset existing = rulesetMapper.get(id);
+    Ruleset existing = rulesetCache.get(id);
     assertCreatorOrAdmin(existing.getCreatedBy());
     String username = getLoggedInUser();
-    rulesetMapper.delete(id, username);
     // admin or ruleset creator can delete anyone's rules within the ruleset
-    ruleMapper.deleteByRuleset(id, username);
+    DeleteCounts counts = rulesetMapper.deleteCascade(id, username, deleteBatchSize);
+    rulesetCache.invalidate(id);
+    ruleCache.invalidateAll(Arrays.asList(counts.getRuleIds()));
+    try {
+      // as for projects, rules left by a failed batch are deleted by a repeat or by the sweep
+      List<Integer> batch = Arrays.asList(counts.getRuleIds());
+      while (batch.size() == deleteBatchSize) {
+        batch = ruleMapper.deleteByRuleset(id, username, deleteBatchSize);
+        ruleCache.invalidateAll(batch);
+        counts.setRules(counts.getRules() + batch.size());
+      }
+      log.info("Deleted ruleset {} with {} rules", id, counts.getRules());
+    } finally {
+      ruleIndex.sync();
+      dataVersions.bump(existing.getProjectId(), id);
+    }
     // comments are not findable, so aren't deleted
-    return rulesetMapper.get(id);
+    return rulesetCache.get(id);
   }
 }
@@ -26,7 +26,8 @@ public interface CommentMapper {
 
   Comment get(@Param("id") int id);
 
-  void create(Comment comment);
+  /** Each write returns the comment as written, or null if it is already deleted. */
+  Comment create(Comment comment);
 
-  void delete(@Param("id") int id, @Param("username") String username);
+  Comment delete(@Param("id") int id, @Param("username") String username);
 }
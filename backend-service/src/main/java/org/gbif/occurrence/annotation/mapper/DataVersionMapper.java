@@ -0,0 +1,44 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.occurrence.annotation.mapper;
+
+import org.gbif.occurrence.annotation.model.DataVersion;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+@Mapper
+public interface DataVersionMapper {
+  List<DataVersion> list();
+
+  /** Returns the version of the scope, or null if it has never changed. */
+  Long get(@Param("kind") String kind, @Param("id") int id);
+
+  /** Returns the sum of all versions, which is the version of everything. */
+  Long total();
+
+  /**
+   * Bumps the version of the given projects and rulesets, of all rulesets of the project given as
+   * projectRulesets and of the stripe of everything given as allStripe, if they are not null,
+   * returning the new versions.
+   */
+  List<DataVersion> bump(
+      @Param("projectIds") Collection<Integer> projectIds,
+      @Param("rulesetIds") Collection<Integer> rulesetIds,
+      @Param("projectRulesets") Integer projectRulesets,
+      @Param("allStripe") Integer allStripe);
+}
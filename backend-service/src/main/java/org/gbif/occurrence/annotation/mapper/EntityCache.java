@@ -0,0 +1,111 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.occurrence.annotation.mapper;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * A bounded cache of entities read by id, in front of a mapper get. Entries are weighed by their
+ * approximate size in bytes and expire after a while, so changes made by other instances are seen
+ * within that time; writes through this instance replace or invalidate the entries themselves.
+ * Statistics, including the hit ratio and evictions, are published to the meter registry.
+ *
+ * <p>A read answered with an ETag passes the tag, read before the entity, and an entry loaded under
+ * another tag is read again, so that a response is never tagged newer than its content.
+ *
+ * <p>The cached entities are shared, so callers must not modify them.
+ */
+public class EntityCache<T> {
+  private final Cache<Integer, Entry<T>> cache;
+  private final IntFunction<T> loader;
+
+  public EntityCache(
+      String name,
+      IntFunction<T> loader,
+      ToIntFunction<T> weigher,
+      long maxBytes,
+      Duration expiry,
+      MeterRegistry meterRegistry) {
+    this.loader = loader;
+    cache =
+        Caffeine.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher((Integer id, Entry<T> entry) -> weigher.applyAsInt(entry.entity()))
+            .expireAfterWrite(expiry)
+            .recordStats()
+            .build();
+    CaffeineCacheMetrics.monitor(meterRegistry, cache, name);
+  }
+
+  /** Returns the entity, reading it if it is not cached, or null if it does not exist. */
+  public T get(int id) {
+    return entity(cache.get(id, key -> load(key, null)));
+  }
+
+  /**
+   * Returns the entity as get does, but reads it again unless it was cached under the tag, which
+   * must be read before this is called.
+   */
+  public T get(int id, String tag) {
+    Entry<T> entry = cache.getIfPresent(id);
+    if (entry == null || !Objects.equals(entry.tag(), tag)) {
+      entry = load(id, tag);
+      if (entry == null) {
+        cache.invalidate(id);
+      } else {
+        cache.put(id, entry);
+      }
+    }
+    return entity(entry);
+  }
+
+  /** Replaces the entity with one as written, or invalidates it if nothing was written. */
+  public void put(int id, T entity) {
+    if (entity == null) {
+      cache.invalidate(id);
+    } else {
+      cache.put(id, new Entry<>(null, entity));
+    }
+  }
+
+  public void invalidate(int id) {
+    cache.invalidate(id);
+  }
+
+  /** For writes that change several entities, such as cascading deletes. */
+  public void invalidateAll(Iterable<Integer> ids) {
+    cache.invalidateAll(ids);
+  }
+
+  private Entry<T> load(int id, String tag) {
+    T entity = loader.apply(id);
+    return entity == null ? null : new Entry<>(tag, entity);
+  }
+
+  private static <T> T entity(Entry<T> entry) {
+    return entry == null ? null : entry.entity();
+  }
+
+  /** An entity with the tag it was read under, or null if it was written through this instance. */
+  private record Entry<T>(String tag, T entity) {}
+}
@@ -13,6 +13,7 @@
  */
 package org.gbif.occurrence.annotation.mapper;
 
+import org.gbif.occurrence.annotation.model.DeleteCounts;
 import org.gbif.occurrence.annotation.model.Project;
 
 import java.util.List;
@@ -23,13 +24,25 @@ import org.apache.ibatis.annotations.Param;
 @Mapper
 public interface ProjectMapper {
   List<Project> list(
-      @Param("limit") int limit, @Param("offset") int offset, @Param("member") String member);
+      @Param("limit") int limit,
+      @Param("offset") int offset,
+      @Param("member") String member,
+      @Param("after") Integer after);
 
   Project get(@Param("id") int id);
 
-  void create(Project rule);
+  /** Each write returns the project as written, or null if it is already deleted. */
+  Project create(Project project);
 
-  void update(Project rule);
+  Project update(Project project);
 
-  void delete(@Param("id") int id, @Param("username") String username);
+  Project delete(@Param("id") int id, @Param("username") String username);
+
+  /**
+   * Deletes the project with its rulesets and at most ruleLimit of its rules in one statement. Any
+   * remaining rules are deleted with {@link RuleMapper#deleteByProject}. The rulesets and rules are
+   * deleted even if the project already is, so a delete that failed part way can be repeated.
+   */
+  DeleteCounts deleteCascade(
+      @Param("id") int id, @Param("username") String username, @Param("ruleLimit") int ruleLimit);
 }
@@ -16,6 +16,7 @@ package org.gbif.occurrence.annotation.mapper;
 import org.gbif.occurrence.annotation.model.Rule;
 import org.gbif.occurrence.annotation.model.RuleMetrics;
 
+import java.util.Date;
 import java.util.List;
 
 import org.apache.ibatis.annotations.Mapper;
@@ -23,6 +24,10 @@ import org.apache.ibatis.annotations.Param;
 
 @Mapper
 public interface RuleMapper {
+  /**
+   * Lists the live rules matching the filters, newest first. A summary leaves out the geometry and
+   * the users voting on each rule, which is otherwise returned as WKT unless GeoJSON is requested.
+   */
   List<Rule> list(
       @Param("taxonKey") Integer taxonKey,
       @Param("datasetKey") String datasetKey,
@@ -31,38 +36,87 @@ public interface RuleMapper {
       @Param("basisOfRecord") String[] basisOfRecord,
       @Param("basisOfRecordNegated") Boolean basisOfRecordNegated,
       @Param("yearRange") String yearRange,
+      @Param("year") Integer year,
       @Param("geometry") String geometry,
       @Param("createdBy") String createdBy,
       @Param("supportedBy") String supportedBy,
       @Param("contestedBy") String contestedBy,
       @Param("comment") String comment,
       @Param("limit") int limit,
-      @Param("offset") int offset);
+      @Param("offset") int offset,
+      @Param("after") Integer after,
+      @Param("summary") boolean summary,
+      @Param("geometryFormat") Rule.GEOMETRY_FORMAT geometryFormat);
 
+  /** Returns the rule with its geometry as WKT, and as WKB for the matcher. */
   Rule get(@Param("id") int id);
 
-  void create(Rule rule);
+  /** Lists all rules that are not deleted, with their geometries as WKB only. */
+  List<Rule> listLive();
 
-  void update(Rule rule);
+  /**
+   * Lists all rules created, modified or deleted since the given time, including deleted rules,
+   * with their geometries as WKB only.
+   */
+  List<Rule> listChangedSince(@Param("since") Date since);
 
-  void delete(@Param("id") int id, @Param("username") String username);
+  /**
+   * Returns the WKB geometry the matcher tests points against, which is the holes of an inverted
+   * rule and otherwise its geometry, or null if the rule does not exist.
+   */
+  byte[] getMatchGeometry(@Param("id") int id);
 
-  void deleteByRuleset(@Param("rulesetId") int id, @Param("username") String username);
+  /** Returns the rule as written. */
+  Rule create(Rule rule);
 
-  void deleteByProject(@Param("projectId") int id, @Param("username") String username);
+  /** Creates the rules with a single multi-row insert, setting their ids. */
+  void createBatch(List<Rule> rules);
 
-  void addSupport(@Param("id") int id, @Param("username") String username);
+  /** Returns the rule as written, or null if it is deleted. */
+  Rule update(Rule rule);
 
-  void removeSupport(@Param("id") int id, @Param("username") String username);
+  /** Returns the rule as written, or null if it is already deleted. */
+  Rule delete(@Param("id") int id, @Param("username") String username);
 
-  void addContest(@Param("id") int id, @Param("username") String username);
+  /** Deletes at most limit rules of the ruleset, returning their ids. */
+  List<Integer> deleteByRuleset(
+      @Param("rulesetId") int id, @Param("username") String username, @Param("limit") int limit);
 
-  void removeContest(@Param("id") int id, @Param("username") String username);
+  /** Deletes at most limit rules of the project, returning their ids. */
+  List<Integer> deleteByProject(
+      @Param("projectId") int id, @Param("username") String username, @Param("limit") int limit);
 
+  /**
+   * Deletes at most limit of the rules left live in deleted projects and rulesets, returning their
+   * ids, projectIds and rulesetIds.
+   */
+  List<Rule> deleteOrphans(@Param("limit") int limit);
+
+  /**
+   * Sets the user's vote on the rule, replacing any vote of the other type, and returns the updated
+   * rule or null if it does not exist. The rule is returned without its geometry or the users
+   * voting on it, which are read with {@link #get} in a later statement.
+   */
+  Rule vote(
+      @Param("id") int id, @Param("username") String username, @Param("kind") Rule.VOTE_TYPE kind);
+
+  /** Removes the user's vote of the given type and returns the updated rule, as for vote. */
+  Rule unvote(
+      @Param("id") int id, @Param("username") String username, @Param("kind") Rule.VOTE_TYPE kind);
+
+  /** Reads the maintained metrics of the rules matching at most one of the filters. */
   List<RuleMetrics> metrics(
       @Param("username") String username,
       @Param("taxonKey") Integer taxonKey,
       @Param("datasetKey") String datasetKey,
       @Param("rulesetId") Integer rulesetId,
       @Param("projectId") Integer projectId);
+
+  /** Aggregates the metrics of the rules matching all the filters. */
+  List<RuleMetrics> metricsOfRules(
+      @Param("username") String username,
+      @Param("taxonKey") Integer taxonKey,
+      @Param("datasetKey") String datasetKey,
+      @Param("rulesetId") Integer rulesetId,
+      @Param("projectId") Integer projectId);
 }
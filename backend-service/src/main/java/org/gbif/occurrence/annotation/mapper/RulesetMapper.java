@@ -13,6 +13,7 @@
  */
 package org.gbif.occurrence.annotation.mapper;
 
+import org.gbif.occurrence.annotation.model.DeleteCounts;
 import org.gbif.occurrence.annotation.model.Ruleset;
 
 import java.util.List;
@@ -25,17 +26,27 @@ public interface RulesetMapper {
   List<Ruleset> list(
       @Param("projectId") Integer projectId,
       @Param("limit") int limit,
-      @Param("offset") int offset);
+      @Param("offset") int offset,
+      @Param("after") Integer after);
 
   Ruleset get(@Param("id") int id);
 
-  void create(Ruleset rule);
+  /** Each write returns the ruleset as written, or null if it is already deleted. */
+  Ruleset create(Ruleset ruleset);
 
-  void update(Ruleset rule);
+  Ruleset update(Ruleset ruleset);
 
-  void delete(@Param("id") int id, @Param("username") String username);
+  Ruleset delete(@Param("id") int id, @Param("username") String username);
 
-  void deleteByProject(@Param("projectId") int id, @Param("username") String username);
+  /**
+   * Deletes the ruleset and at most ruleLimit of its rules in one statement. Any remaining rules
+   * are deleted with {@link RuleMapper#deleteByRuleset}. The rules are deleted even if the ruleset
+   * already is, so a delete that failed part way can be repeated.
+   */
+  DeleteCounts deleteCascade(
+      @Param("id") int id, @Param("username") String username, @Param("ruleLimit") int ruleLimit);
 
-  void updateMembersByProject(@Param("projectId") int id, @Param("members") String[] members);
+  /** Sets the members of the live rulesets of the project, returning their ids. */
+  List<Integer> updateMembersByProject(
+      @Param("projectId") int id, @Param("members") String[] members);
 }
@@ -0,0 +1,131 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.occurrence.annotation.matcher;
+
+import org.gbif.occurrence.annotation.model.BasisOfRecordMask;
+import org.gbif.occurrence.annotation.model.Occurrence;
+import org.gbif.occurrence.annotation.model.Rule;
+import org.gbif.occurrence.annotation.model.YearRange;
+
+import java.util.Date;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+
+import lombok.Getter;
+
+/**
+ * A live rule compiled into an immutable predicate. The conditions are tested cheapest and most
+ * selective first (taxonKey, datasetKey, basisOfRecord, year, envelope) so that the exact
+ * geometry test, the only costly one, is made just for records that pass all the others.
+ *
+ * <p>Only the envelope is kept resident; the geometry is read, parsed and held by the bounded
+ * {@link GeometryCache}.
+ */
+@Getter
+class CompiledRule {
+  private final int id;
+  private final long stamp;
+  private final Integer taxonKey;
+  private final boolean includeDescendants;
+  private final Rule.ANNOTATION_TYPE annotation;
+  private final String datasetKey;
+  // the basisOfRecord values the rule applies to, see BasisOfRecordMask
+  private final int basisOfRecordMask;
+  private final int yearFrom;
+  private final int yearTo;
+  private final boolean hasYearRange;
+  private final boolean inverted;
+  private final Envelope envelope;
+
+  CompiledRule(Rule rule, Envelope envelope) {
+    this.id = rule.getId();
+    this.stamp = stamp(rule);
+    this.taxonKey = rule.getTaxonKey();
+    this.includeDescendants = Boolean.TRUE.equals(rule.getIncludeDescendants());
+    this.annotation = rule.getAnnotation();
+    this.datasetKey = rule.getDatasetKey();
+    this.basisOfRecordMask =
+        BasisOfRecordMask.accepted(
+            rule.getBasisOfRecord(), Boolean.TRUE.equals(rule.getBasisOfRecordNegated()));
+    YearRange yearRange =
+        rule.getYearRange() == null ? null : YearRange.parse(rule.getYearRange());
+    this.hasYearRange = yearRange != null;
+    this.yearFrom = hasYearRange ? yearRange.getFrom() : Integer.MIN_VALUE;
+    this.yearTo = hasYearRange ? yearRange.getTo() : Integer.MAX_VALUE;
+    this.inverted = isInverted(rule);
+    this.envelope = envelope;
+  }
+
+  static boolean isInverted(Rule rule) {
+    return Boolean.TRUE.equals(rule.getInverted()) && rule.getHoles() != null;
+  }
+
+  /** Identifies the version of the rule, and so of its geometry in the cache. */
+  static long stamp(Rule rule) {
+    Date modified = rule.getModified() != null ? rule.getModified() : rule.getCreated();
+    return modified == null ? 0 : modified.getTime();
+  }
+
+  /**
+   * Tests the occurrence against the rule.
+   *
+   * @param lineage the occurrence taxonKey followed by its ancestors, see {@link TaxonAncestry}
+   * @param basisOfRecordBit the {@link BasisOfRecordMask#bit} of the occurrence basisOfRecord
+   * @param point the occurrence coordinates
+   * @param geometries the source of the rule geometry, only consulted if all else matches
+   */
+  boolean matches(
+      Occurrence occurrence,
+      int[] lineage,
+      int basisOfRecordBit,
+      Point point,
+      GeometryCache geometries) {
+    if (taxonKey != null && !appliesToTaxon(lineage)) {
+      return false;
+    }
+    if (datasetKey != null && !datasetKey.equals(occurrence.getDatasetKey())) {
+      return false;
+    }
+    if ((basisOfRecordMask & basisOfRecordBit) == 0) {
+      return false;
+    }
+    if (hasYearRange) {
+      Integer year = occurrence.getYear();
+      if (year == null || year < yearFrom || year > yearTo) {
+        return false;
+      }
+    }
+    if (!envelope.covers(point.getX(), point.getY())) {
+      return false;
+    }
+    PreparedGeometry geometry = geometries.get(this);
+    if (geometry == null) {
+      return false; // deleted since it was indexed
+    }
+    // inverted rules match points within their envelope that are not in any hole
+    return inverted ? !geometry.covers(point) : geometry.contains(point);
+  }
+
+  private boolean appliesToTaxon(int[] lineage) {
+    int depth = includeDescendants ? lineage.length : Math.min(1, lineage.length);
+    for (int i = 0; i < depth; i++) {
+      if (lineage[i] == taxonKey) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
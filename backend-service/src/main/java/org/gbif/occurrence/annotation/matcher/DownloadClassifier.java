@@ -0,0 +1,213 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.occurrence.annotation.matcher;
+
+import org.gbif.occurrence.annotation.model.Classification;
+import org.gbif.occurrence.annotation.model.Occurrence;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Classifies every record of a GBIF download, reading the zip as a stream and writing the records
+ * back with is_suspicious, has_conflict and rule_ids columns appended. Records are processed in
+ * fixed size chunks, so memory use does not depend on the size of the download.
+ *
+ * <p>Both SIMPLE_CSV (a single tab separated file) and DWCA (whose interpreted records are in
+ * occurrence.txt) downloads are supported, as both use unquoted tab separated values with a
+ * header row of term names.
+ */
+@Component
+public class DownloadClassifier {
+  private static final String DWCA_OCCURRENCE_FILE = "occurrence.txt";
+  private static final String SIMPLE_CSV_SUFFIX = ".csv";
+  private static final String DELIMITER = "\t";
+  private static final String[] ADDED_COLUMNS = {"is_suspicious", "has_conflict", "rule_ids"};
+  private static final Pattern DOWNLOAD_KEY = Pattern.compile("[0-9]+-[0-9]+");
+
+  @Autowired private RuleMatcher ruleMatcher;
+
+  @Value("${annotation.classify.download-chunk-size:10000}")
+  private int chunkSize;
+
+  @Value("${registry.ws.url}")
+  private String gbifApiUrl;
+
+  private final HttpClient httpClient =
+      HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NORMAL).build();
+
+  /** Fetches the download from the GBIF API and classifies it as it arrives. */
+  public void classify(String downloadKey, OutputStream out) throws IOException {
+    if (!DOWNLOAD_KEY.matcher(downloadKey).matches()) {
+      throw new IllegalArgumentException("Invalid download key: " + downloadKey);
+    }
+    URI uri = URI.create(gbifApiUrl + "/occurrence/download/request/" + downloadKey + ".zip");
+    HttpResponse<InputStream> response;
+    try {
+      response =
+          httpClient.send(
+              HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.ofInputStream());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted fetching download " + downloadKey, e);
+    }
+    try (InputStream download = response.body()) {
+      if (response.statusCode() != 200) {
+        throw new IllegalArgumentException(
+            "Download " + downloadKey + " is not available (HTTP " + response.statusCode() + ")");
+      }
+      classify(download, out);
+    }
+  }
+
+  public void classify(InputStream download, OutputStream out) throws IOException {
+    ZipInputStream zip = new ZipInputStream(download, StandardCharsets.UTF_8);
+    ZipEntry entry;
+    while ((entry = zip.getNextEntry()) != null) {
+      String name = entry.getName();
+      if (name.equals(DWCA_OCCURRENCE_FILE) || name.endsWith(SIMPLE_CSV_SUFFIX)) {
+        classifyTable(zip, out);
+        return;
+      }
+    }
+    throw new IllegalArgumentException(
+        "Download contains neither occurrence.txt (DWCA) nor a .csv file (SIMPLE_CSV)");
+  }
+
+  private void classifyTable(InputStream in, OutputStream out) throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    String header = reader.readLine();
+    if (header == null) {
+      throw new IllegalArgumentException("Occurrence file in download is empty");
+    }
+    Columns columns = new Columns(header.split(DELIMITER, -1));
+
+    Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    writer.write(header + DELIMITER + String.join(DELIMITER, ADDED_COLUMNS) + "\n");
+
+    List<String> lines = new ArrayList<>(chunkSize);
+    List<Occurrence> occurrences = new ArrayList<>(chunkSize);
+    String line;
+    while ((line = reader.readLine()) != null) {
+      lines.add(line);
+      occurrences.add(columns.toOccurrence(line.split(DELIMITER, -1)));
+      if (lines.size() == chunkSize) {
+        writeChunk(lines, occurrences, writer);
+      }
+    }
+    writeChunk(lines, occurrences, writer);
+    writer.flush();
+  }
+
+  private void writeChunk(List<String> lines, List<Occurrence> occurrences, Writer writer)
+      throws IOException {
+    List<Classification> classifications = ruleMatcher.classify(occurrences);
+    for (int i = 0; i < lines.size(); i++) {
+      Classification classification = classifications.get(i);
+      writer
+          .append(lines.get(i))
+          .append(DELIMITER)
+          .append(String.valueOf(classification.isSuspicious()))
+          .append(DELIMITER)
+          .append(String.valueOf(classification.hasConflict()))
+          .append(DELIMITER)
+          .append(
+              classification.getMatches().stream()
+                  .map(m -> String.valueOf(m.getRuleId()))
+                  .collect(Collectors.joining(",")))
+          .append('\n');
+    }
+    lines.clear();
+    occurrences.clear();
+  }
+
+  /** Positions of the columns needed for matching, which may be absent (-1). */
+  private static class Columns {
+    private final int decimalLatitude;
+    private final int decimalLongitude;
+    private final int taxonKey;
+    private final int datasetKey;
+    private final int basisOfRecord;
+    private final int year;
+
+    Columns(String[] header) {
+      List<String> names = Arrays.asList(header);
+      decimalLatitude = names.indexOf("decimalLatitude");
+      decimalLongitude = names.indexOf("decimalLongitude");
+      taxonKey = names.indexOf("taxonKey");
+      datasetKey = names.indexOf("datasetKey");
+      basisOfRecord = names.indexOf("basisOfRecord");
+      year = names.indexOf("year");
+      if (decimalLatitude < 0 || decimalLongitude < 0) {
+        throw new IllegalArgumentException(
+            "Occurrence file must have decimalLatitude and decimalLongitude columns");
+      }
+    }
+
+    Occurrence toOccurrence(String[] values) {
+      return Occurrence.builder()
+          .decimalLatitude(toDouble(value(values, decimalLatitude)))
+          .decimalLongitude(toDouble(value(values, decimalLongitude)))
+          .taxonKey(toInteger(value(values, taxonKey)))
+          .datasetKey(value(values, datasetKey))
+          .basisOfRecord(value(values, basisOfRecord))
+          .year(toInteger(value(values, year)))
+          .build();
+    }
+
+    private static String value(String[] values, int index) {
+      return index < 0 || index >= values.length || values[index].isEmpty()
+          ? null
+          : values[index];
+    }
+
+    private static Double toDouble(String value) {
+      try {
+        return value == null ? null : Double.valueOf(value);
+      } catch (NumberFormatException e) {
+        return null;
+      }
+    }
+
+    private static Integer toInteger(String value) {
+      try {
+        return value == null ? null : Integer.valueOf(value);
+      } catch (NumberFormatException e) {
+        return null;
+      }
+    }
+  }
+}
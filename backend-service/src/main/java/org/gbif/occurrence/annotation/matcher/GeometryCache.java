@@ -0,0 +1,115 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.occurrence.annotation.matcher;
+
+import org.gbif.occurrence.annotation.mapper.RuleMapper;
+
+import java.util.function.IntFunction;
+
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.geom.util.GeometryFixer;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * A bounded cache of parsed and prepared rule geometries, keyed by rule id and modification
+ * stamp. The cache is weighted by vertex count so a few very detailed polygons cannot crowd out
+ * everything else, and its statistics are published to the meter registry as "ruleGeometry".
+ *
+ * <p>Geometries are only held here, so an evicted one is read from the database again. A rule
+ * changed since it was indexed may briefly be tested against its new geometry, until the index
+ * replaces it.
+ */
+@Component
+public class GeometryCache {
+  static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory(new PrecisionModel(), 4326);
+
+  private final Cache<Key, PreparedGeometry> cache;
+  // reads the WKB of the geometry to test points against by rule id, see RuleMapper
+  private final IntFunction<byte[]> loader;
+
+  @Autowired
+  public GeometryCache(
+      MeterRegistry meterRegistry,
+      @Value("${annotation.geometry-cache.max-vertices:5000000}") long maxVertices,
+      RuleMapper ruleMapper) {
+    this(meterRegistry, maxVertices, ruleMapper::getMatchGeometry);
+  }
+
+  GeometryCache(MeterRegistry meterRegistry, long maxVertices, IntFunction<byte[]> loader) {
+    this.loader = loader;
+    cache =
+        Caffeine.newBuilder()
+            .maximumWeight(maxVertices)
+            .weigher((Key key, PreparedGeometry geometry) -> geometry.getGeometry().getNumPoints())
+            .recordStats()
+            .build();
+    CaffeineCacheMetrics.monitor(meterRegistry, cache, "ruleGeometry");
+  }
+
+  /** Parses WKB, repairing invalid geometries so point tests behave. */
+  static Geometry parse(byte[] wkb) throws ParseException {
+    Geometry geometry = new WKBReader(GEOMETRY_FACTORY).read(wkb);
+    return geometry.isValid() ? geometry : GeometryFixer.fix(geometry);
+  }
+
+  /**
+   * Returns the prepared geometry for the rule, reading it again if it has been evicted, or null
+   * if the rule no longer exists.
+   */
+  PreparedGeometry get(CompiledRule rule) {
+    return cache.get(
+        new Key(rule.getId(), rule.getStamp()),
+        key -> {
+          byte[] wkb = loader.apply(rule.getId());
+          if (wkb == null) {
+            return null;
+          }
+          try {
+            return PreparedGeometryFactory.prepare(parse(wkb));
+          } catch (ParseException e) {
+            // the rule was parsed when it was indexed, so this is not expected
+            throw new IllegalStateException("Cannot parse geometry of rule " + rule.getId(), e);
+          }
+        });
+  }
+
+  void put(CompiledRule rule, Geometry geometry) {
+    cache.put(new Key(rule.getId(), rule.getStamp()), PreparedGeometryFactory.prepare(geometry));
+  }
+
+  void invalidate(CompiledRule rule) {
+    cache.invalidate(new Key(rule.getId(), rule.getStamp()));
+  }
+
+  /** Performs pending maintenance, such as evictions, which is otherwise done asynchronously. */
+  void cleanUp() {
+    cache.cleanUp();
+  }
+
+  private record Key(int ruleId, long stamp) {}
+}
@@ -0,0 +1,78 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.occurrence.annotation.matcher;
+
+import org.gbif.occurrence.annotation.model.Rule;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBWriter;
+import org.locationtech.jts.io.WKTReader;
+
+/**
+ * Detects "inverted" rule geometries: a rectangle spanning (almost) the whole globe with holes
+ * cut out, used for "everywhere except the native range" rules. A point matches such a rule
+ * exactly when it is not in one of the holes, so only the holes need to be stored for matching,
+ * rather than testing against a globe sized polygon.
+ */
+public class InvertedPolygons {
+  // the thresholds used by clean_download() in the R package
+  private static final double MIN_LONGITUDE_SPAN = 300;
+  private static final double MIN_LATITUDE_SPAN = 150;
+
+  private InvertedPolygons() {}
+
+  /**
+   * Sets the inverted flag and holes of the rule from its geometry.
+   *
+   * @throws IllegalArgumentException if the geometry is not valid WKT
+   */
+  public static void classify(Rule rule) {
+    Geometry geometry;
+    try {
+      geometry = new WKTReader(GeometryCache.GEOMETRY_FACTORY).read(rule.getGeometry());
+    } catch (ParseException e) {
+      throw new IllegalArgumentException("Invalid WKT geometry: " + e.getMessage());
+    }
+
+    rule.setInverted(false);
+    rule.setHoles(null);
+    if (geometry instanceof Polygon && isInverted((Polygon) geometry)) {
+      Polygon polygon = (Polygon) geometry;
+      Polygon[] holes = new Polygon[polygon.getNumInteriorRing()];
+      for (int i = 0; i < holes.length; i++) {
+        LinearRing ring = polygon.getInteriorRingN(i);
+        holes[i] = GeometryCache.GEOMETRY_FACTORY.createPolygon(ring.getCoordinates());
+      }
+      rule.setInverted(true);
+      rule.setHoles(
+          new WKBWriter().write(GeometryCache.GEOMETRY_FACTORY.createMultiPolygon(holes)));
+    }
+  }
+
+  private static boolean isInverted(Polygon polygon) {
+    if (polygon.getNumInteriorRing() == 0) {
+      return false;
+    }
+    // matching relies on the envelope standing in for the shell
+    Polygon shell = GeometryCache.GEOMETRY_FACTORY.createPolygon(polygon.getExteriorRing());
+    Envelope envelope = shell.getEnvelopeInternal();
+    return shell.isRectangle()
+        && envelope.getWidth() > MIN_LONGITUDE_SPAN
+        && envelope.getHeight() > MIN_LATITUDE_SPAN;
+  }
+}
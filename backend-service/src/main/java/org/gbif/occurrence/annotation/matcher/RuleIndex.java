@@ -0,0 +1,220 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.occurrence.annotation.matcher;
+
+import org.gbif.occurrence.annotation.mapper.RuleMapper;
+import org.gbif.occurrence.annotation.model.Rule;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A resident index of all live rules, compiled and partitioned by taxonKey with an STR-tree over
+ * the rule envelopes in each large partition.
+ *
+ * <p>Lookups are lock-free: each partition is immutable and replaced wholesale when one of its
+ * rules changes. Writes through this instance are applied immediately by the controllers, and
+ * changes made elsewhere (other instances, cascading deletes) are picked up by a periodic sync.
+ */
+@Slf4j
+@Component
+public class RuleIndex {
+  // changes are re-read for this long, so rows committed by slow transactions are not missed
+  private static final long SYNC_OVERLAP_MS = 5 * 60 * 1000L;
+
+  @Autowired private RuleMapper ruleMapper;
+  @Autowired private GeometryCache geometryCache;
+
+  private final Map<Integer, CompiledRule> rulesById = new ConcurrentHashMap<>();
+  private final Map<Integer, Partition> partitions = new ConcurrentHashMap<>();
+  // rules without a taxonKey apply to every record
+  private volatile Partition anyTaxon = Partition.EMPTY;
+  private Date watermark = new Date(0);
+
+  @PostConstruct
+  public synchronized void load() {
+    List<Rule> rules = ruleMapper.listLive();
+    apply(rules);
+    log.info("Loaded {} rules into {} taxon partitions", rulesById.size(), partitions.size());
+  }
+
+  /** Applies changes to rules made since the last sync, including those by other instances. */
+  @Scheduled(
+      initialDelayString = "${annotation.index.sync-interval-ms:60000}",
+      fixedDelayString = "${annotation.index.sync-interval-ms:60000}")
+  public synchronized void sync() {
+    Date since = new Date(watermark.getTime() - SYNC_OVERLAP_MS);
+    List<Rule> changed = ruleMapper.listChangedSince(since);
+    apply(changed);
+    log.debug("Synced {} changed rules", changed.size());
+  }
+
+  /** Adds or replaces the rule, removing it if it is deleted. */
+  public synchronized void put(Rule rule) {
+    apply(List.of(rule));
+  }
+
+  public synchronized void remove(int id) {
+    CompiledRule existing = rulesById.remove(id);
+    if (existing != null) {
+      geometryCache.invalidate(existing);
+      Map<Integer, CompiledRule> members = new HashMap<>(partition(existing.getTaxonKey()).rules);
+      members.remove(id);
+      setPartition(existing.getTaxonKey(), new Partition(members));
+    }
+  }
+
+  /**
+   * Returns the rules for the taxa in the lineage (and those for any taxon) that may apply at the
+   * coordinate. Large partitions are narrowed by envelope; the caller is responsible for testing
+   * each rule, including whether a rule on an ancestor applies to descendants.
+   */
+  List<CompiledRule> candidates(int[] lineage, Coordinate coordinate) {
+    Envelope envelope = new Envelope(coordinate);
+    List<CompiledRule> candidates = new ArrayList<>(anyTaxon.query(envelope));
+    for (int taxonKey : lineage) {
+      candidates.addAll(partition(taxonKey).query(envelope));
+    }
+    return candidates;
+  }
+
+  public int size() {
+    return rulesById.size();
+  }
+
+  private void apply(Collection<Rule> rules) {
+    // working copies of the partitions being changed, keyed by taxonKey (null for any taxon)
+    Map<Integer, Map<Integer, CompiledRule>> changed = new HashMap<>();
+    for (Rule rule : rules) {
+      advanceWatermark(rule);
+      CompiledRule existing = rulesById.get(rule.getId());
+      if (existing != null
+          && rule.getDeleted() == null
+          && existing.getStamp() == CompiledRule.stamp(rule)) {
+        continue; // unchanged, as when a sync re-reads recent changes
+      }
+      rulesById.remove(rule.getId());
+      if (existing != null) {
+        geometryCache.invalidate(existing);
+        members(changed, existing.getTaxonKey()).remove(rule.getId());
+      }
+      if (rule.getDeleted() == null) {
+        CompiledRule compiled = compile(rule);
+        if (compiled != null) {
+          rulesById.put(rule.getId(), compiled);
+          members(changed, rule.getTaxonKey()).put(rule.getId(), compiled);
+        }
+      }
+    }
+    changed.forEach((taxonKey, members) -> setPartition(taxonKey, new Partition(members)));
+  }
+
+  /** Returns null if the rule geometry cannot be used, which is logged. */
+  private CompiledRule compile(Rule rule) {
+    try {
+      boolean inverted = CompiledRule.isInverted(rule);
+      Geometry geometry = GeometryCache.parse(inverted ? rule.getHoles() : rule.getGeometryWkb());
+      // the shell of an inverted rule is a rectangle, so there is no need to repair it
+      Envelope envelope =
+          inverted
+              ? new WKBReader(GeometryCache.GEOMETRY_FACTORY)
+                  .read(rule.getGeometryWkb())
+                  .getEnvelopeInternal()
+              : geometry.getEnvelopeInternal();
+      CompiledRule compiled = new CompiledRule(rule, envelope);
+      geometryCache.put(compiled, geometry);
+      return compiled;
+    } catch (ParseException | IllegalArgumentException e) {
+      log.warn("Ignoring rule {} which cannot be parsed: {}", rule.getId(), e.getMessage());
+      return null;
+    }
+  }
+
+  private Map<Integer, CompiledRule> members(
+      Map<Integer, Map<Integer, CompiledRule>> changed, Integer taxonKey) {
+    return changed.computeIfAbsent(taxonKey, k -> new HashMap<>(partition(k).rules));
+  }
+
+  private void advanceWatermark(Rule rule) {
+    for (Date date : new Date[] {rule.getCreated(), rule.getModified(), rule.getDeleted()}) {
+      if (date != null && date.after(watermark)) {
+        watermark = date;
+      }
+    }
+  }
+
+  private Partition partition(Integer taxonKey) {
+    return taxonKey == null ? anyTaxon : partitions.getOrDefault(taxonKey, Partition.EMPTY);
+  }
+
+  private void setPartition(Integer taxonKey, Partition partition) {
+    if (taxonKey == null) {
+      anyTaxon = partition;
+    } else if (partition.rules.isEmpty()) {
+      partitions.remove(taxonKey);
+    } else {
+      partitions.put(taxonKey, partition);
+    }
+  }
+
+  /**
+   * An immutable set of rules. Beyond a handful of rules an STR-tree is built over their
+   * envelopes; below that a scan of the compiled rules, which test their envelopes early, is
+   * cheaper than a tree query.
+   */
+  private static class Partition {
+    static final Partition EMPTY = new Partition(Map.of());
+    private static final int TREE_THRESHOLD = 16;
+
+    private final Map<Integer, CompiledRule> rules;
+    private final List<CompiledRule> scan;
+    private final STRtree tree;
+
+    Partition(Map<Integer, CompiledRule> rules) {
+      this.rules = rules;
+      if (rules.size() > TREE_THRESHOLD) {
+        scan = null;
+        tree = new STRtree();
+        rules.values().forEach(rule -> tree.insert(rule.getEnvelope(), rule));
+        tree.build(); // building is not thread safe, so it must not happen lazily on query
+      } else {
+        scan = List.copyOf(rules.values());
+        tree = null;
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    List<CompiledRule> query(Envelope envelope) {
+      return tree == null ? scan : tree.query(envelope);
+    }
+  }
+}
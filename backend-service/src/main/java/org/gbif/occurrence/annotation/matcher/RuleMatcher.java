@@ -0,0 +1,181 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.occurrence.annotation.matcher;
+
+import org.gbif.occurrence.annotation.model.BasisOfRecordMask;
+import org.gbif.occurrence.annotation.model.Classification;
+import org.gbif.occurrence.annotation.model.Occurrence;
+import org.gbif.occurrence.annotation.model.RuleMatch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Point;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Evaluates occurrence records against the live rules held in the {@link RuleIndex}.
+ *
+ * <p>Large batches are classified in parallel. The records are grouped by taxonKey and by spatial
+ * tile, so each task works with the same few rules and cached geometries, and split across a
+ * fork/join pool. Each task writes only to its own slots of the result array, and the rule index
+ * is read without locks, so no synchronization is needed.
+ */
+@Component
+public class RuleMatcher {
+  // the size of the tiles that records are grouped by, in degrees
+  private static final int TILE_DEGREES = 10;
+  private static final int TILES_PER_ROW = 360 / TILE_DEGREES;
+
+  @Autowired private RuleIndex ruleIndex;
+  @Autowired private GeometryCache geometryCache;
+  @Autowired private TaxonAncestry taxonAncestry;
+
+  @Value("${annotation.classify.parallelism:0}")
+  private int parallelism;
+
+  @Value("${annotation.classify.parallel-threshold:5000}")
+  private int parallelThreshold;
+
+  // records classified by a single task, large enough to outweigh the cost of forking
+  @Value("${annotation.classify.task-size:1000}")
+  private int taskSize;
+
+  private ForkJoinPool pool;
+
+  @PostConstruct
+  void startPool() {
+    int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    pool = new ForkJoinPool(threads);
+  }
+
+  @PreDestroy
+  void stopPool() {
+    pool.shutdown();
+  }
+
+  /**
+   * Classifies the occurrences, returning one classification per record in the order given.
+   * Records without coordinates match no rules.
+   */
+  public List<Classification> classify(List<Occurrence> occurrences) {
+    if (occurrences.size() < parallelThreshold) {
+      List<Classification> classifications = new ArrayList<>(occurrences.size());
+      for (Occurrence occurrence : occurrences) {
+        classifications.add(classify(occurrence));
+      }
+      return classifications;
+    }
+    Classification[] classifications = new Classification[occurrences.size()];
+    pool.invoke(new ClassifyTask(occurrences, partitionOrder(occurrences), classifications));
+    return Arrays.asList(classifications);
+  }
+
+  /** Returns the record indexes grouped by taxonKey and tile. */
+  private static int[] partitionOrder(List<Occurrence> occurrences) {
+    Map<Long, List<Integer>> partitions = new HashMap<>();
+    for (int i = 0; i < occurrences.size(); i++) {
+      Occurrence occurrence = occurrences.get(i);
+      long taxonKey = occurrence.getTaxonKey() == null ? -1 : occurrence.getTaxonKey();
+      long key = taxonKey << 32 | (tile(occurrence) & 0xFFFFFFFFL);
+      partitions.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+    }
+    int[] order = new int[occurrences.size()];
+    int next = 0;
+    for (List<Integer> partition : partitions.values()) {
+      for (int i : partition) {
+        order[next++] = i;
+      }
+    }
+    return order;
+  }
+
+  private static int tile(Occurrence occurrence) {
+    if (occurrence.getDecimalLatitude() == null || occurrence.getDecimalLongitude() == null) {
+      return -1;
+    }
+    int row = (int) Math.floor((occurrence.getDecimalLatitude() + 90) / TILE_DEGREES);
+    int column = (int) Math.floor((occurrence.getDecimalLongitude() + 180) / TILE_DEGREES);
+    return row * TILES_PER_ROW + column;
+  }
+
+  public Classification classify(Occurrence occurrence) {
+    Classification classification = new Classification();
+    if (occurrence.getDecimalLatitude() != null && occurrence.getDecimalLongitude() != null) {
+      Coordinate coordinate =
+          new Coordinate(occurrence.getDecimalLongitude(), occurrence.getDecimalLatitude());
+      Point point = GeometryCache.GEOMETRY_FACTORY.createPoint(coordinate);
+      int[] lineage = taxonAncestry.lineage(occurrence.getTaxonKey());
+      int basisOfRecordBit = BasisOfRecordMask.bit(occurrence.getBasisOfRecord());
+      for (CompiledRule rule : ruleIndex.candidates(lineage, coordinate)) {
+        if (rule.matches(occurrence, lineage, basisOfRecordBit, point, geometryCache)) {
+          classification.getMatches().add(new RuleMatch(rule.getId(), rule.getAnnotation()));
+        }
+      }
+    }
+    return classification;
+  }
+
+  /** Classifies a range of the records in partition order, splitting it while it is large. */
+  private class ClassifyTask extends RecursiveAction {
+    private final List<Occurrence> occurrences;
+    private final int[] order;
+    private final Classification[] classifications;
+    private final int from;
+    private final int to;
+
+    ClassifyTask(List<Occurrence> occurrences, int[] order, Classification[] classifications) {
+      this(occurrences, order, classifications, 0, order.length);
+    }
+
+    private ClassifyTask(
+        List<Occurrence> occurrences,
+        int[] order,
+        Classification[] classifications,
+        int from,
+        int to) {
+      this.occurrences = occurrences;
+      this.order = order;
+      this.classifications = classifications;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= taskSize) {
+        for (int i = from; i < to; i++) {
+          int index = order[i];
+          classifications[index] = classify(occurrences.get(index));
+        }
+      } else {
+        int middle = (from + to) >>> 1;
+        invokeAll(
+            new ClassifyTask(occurrences, order, classifications, from, middle),
+            new ClassifyTask(occurrences, order, classifications, middle, to));
+      }
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.occurrence.annotation.matcher;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A local copy of the backbone taxonomy, used to apply rules to the descendants of their taxon
+ * without remote species lookups.
+ *
+ * <p>It is loaded from a tab separated file of taxonKey and parentKey (empty for a root) and each
+ * lineage is precomputed. The lineages are held in flat int arrays: the sorted taxon keys, the
+ * offset of each lineage, and the lineages themselves, so a lookup is one binary search.
+ */
+@Slf4j
+@Component
+public class TaxonAncestry {
+  private static final int[] NONE = new int[0];
+  // guards against cycles in a malformed file; the backbone is far shallower
+  private static final int MAX_DEPTH = 64;
+
+  @Value("${annotation.taxonomy.parents:#{null}}")
+  private Resource parents;
+
+  private int[] keys = NONE;
+  private int[] offsets = {0};
+  private int[] lineages = NONE;
+
+  @PostConstruct
+  public void load() throws IOException {
+    if (parents == null) {
+      log.info("No taxonomy configured, rules apply to their own taxon only");
+      return;
+    }
+
+    Map<Integer, Integer> parentOf = new HashMap<>();
+    try (BufferedReader reader =
+        new BufferedReader(
+            new InputStreamReader(parents.getInputStream(), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.isBlank() || line.startsWith("#")) {
+          continue;
+        }
+        String[] values = line.split("\t", -1);
+        String parent = values.length > 1 ? values[1].trim() : "";
+        parentOf.put(
+            Integer.parseInt(values[0].trim()), parent.isEmpty() ? null : Integer.valueOf(parent));
+      }
+    }
+
+    int[] sortedKeys = parentOf.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+    int[] lineageOffsets = new int[sortedKeys.length + 1];
+    int[] buffer = new int[sortedKeys.length * 8];
+    int size = 0;
+    for (int i = 0; i < sortedKeys.length; i++) {
+      lineageOffsets[i] = size;
+      Integer taxonKey = sortedKeys[i];
+      for (int depth = 0; taxonKey != null && depth < MAX_DEPTH; depth++) {
+        if (size == buffer.length) {
+          buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        buffer[size++] = taxonKey;
+        taxonKey = parentOf.get(taxonKey);
+      }
+    }
+    lineageOffsets[sortedKeys.length] = size;
+
+    keys = sortedKeys;
+    offsets = lineageOffsets;
+    lineages = Arrays.copyOf(buffer, size);
+    log.info("Loaded the lineages of {} taxa from {}", keys.length, parents.getDescription());
+  }
+
+  /**
+   * Returns the taxon followed by its ancestors, nearest first. A taxon not in the taxonomy is
+   * its own lineage, and a missing taxonKey has none.
+   */
+  public int[] lineage(Integer taxonKey) {
+    if (taxonKey == null) {
+      return NONE;
+    }
+    int i = Arrays.binarySearch(keys, taxonKey);
+    return i < 0 ? new int[] {taxonKey} : Arrays.copyOfRange(lineages, offsets[i], offsets[i + 1]);
+  }
+}
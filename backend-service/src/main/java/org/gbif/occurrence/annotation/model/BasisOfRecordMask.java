@@ -0,0 +1,93 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.occurrence.annotation.model;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compiles basisOfRecord values into a bitmask over the GBIF BasisOfRecord vocabulary. The bit
+ * for a value is its position in {@link #VOCABULARY}, which is stored in the database and so must
+ * only ever be appended to.
+ *
+ * <p>Rules may only list values in the vocabulary, and any other value a rule holds matches
+ * nothing. Records with a value outside the vocabulary (including a missing value) have the
+ * {@link #OTHER} bit, so they are matched only by rules that do not list values or that negate
+ * them.
+ */
+public final class BasisOfRecordMask {
+  public static final List<String> VOCABULARY =
+      List.of(
+          "PRESERVED_SPECIMEN",
+          "FOSSIL_SPECIMEN",
+          "LIVING_SPECIMEN",
+          "OBSERVATION",
+          "HUMAN_OBSERVATION",
+          "MACHINE_OBSERVATION",
+          "MATERIAL_SAMPLE",
+          "LITERATURE",
+          "MATERIAL_CITATION",
+          "OCCURRENCE",
+          "UNKNOWN");
+
+  public static final int OTHER = 1 << 30;
+  public static final int ALL = (1 << VOCABULARY.size()) - 1 | OTHER;
+
+  private BasisOfRecordMask() {}
+
+  public static int bit(String basisOfRecord) {
+    int position = basisOfRecord == null ? -1 : VOCABULARY.indexOf(basisOfRecord);
+    return position < 0 ? OTHER : 1 << position;
+  }
+
+  /**
+   * @throws IllegalArgumentException if a value is not in the vocabulary
+   */
+  public static void validate(String[] basisOfRecord) {
+    if (basisOfRecord != null) {
+      for (String value : basisOfRecord) {
+        if (!VOCABULARY.contains(value)) {
+          throw new IllegalArgumentException("Unknown basisOfRecord: " + value);
+        }
+      }
+    }
+  }
+
+  /** The mask of the listed values, or null if there are none. */
+  public static Integer of(String[] basisOfRecord) {
+    if (basisOfRecord == null || basisOfRecord.length == 0) {
+      return null;
+    }
+    return Arrays.stream(basisOfRecord)
+        .mapToInt(BasisOfRecordMask::listedBit)
+        .reduce(0, (a, b) -> a | b);
+  }
+
+  private static int listedBit(String basisOfRecord) {
+    int position = VOCABULARY.indexOf(basisOfRecord);
+    return position < 0 ? 0 : 1 << position;
+  }
+
+  /**
+   * The mask of the values a rule applies to, taking negation into account. Rules without
+   * basisOfRecord values apply to all.
+   */
+  public static int accepted(String[] basisOfRecord, boolean negated) {
+    Integer listed = of(basisOfRecord);
+    if (listed == null) {
+      return ALL;
+    }
+    return negated ? ALL & ~listed : listed;
+  }
+}
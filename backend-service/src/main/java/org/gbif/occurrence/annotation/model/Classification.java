@@ -0,0 +1,42 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.occurrence.annotation.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** The rules matching a single occurrence record. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Classification {
+  private List<RuleMatch> matches = new ArrayList<>();
+
+  /** True if any matching rule marks the record as suspicious. */
+  public boolean isSuspicious() {
+    return matches.stream().anyMatch(m -> m.getAnnotation() == Rule.ANNOTATION_TYPE.SUSPICIOUS);
+  }
+
+  /** True if the matching rules do not agree on the annotation of the record. */
+  @JsonProperty("conflict")
+  public boolean hasConflict() {
+    return matches.stream().map(RuleMatch::getAnnotation).distinct().count() > 1;
+  }
+}
@@ -0,0 +1,33 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.occurrence.annotation.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The number of projects, rulesets and rules marked deleted by a cascading delete, with the ids of
+ * the rulesets and rules so that only they are dropped from the caches.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeleteCounts {
+  private int projects;
+  private int rulesets;
+  private int rules;
+  private Integer[] rulesetIds;
+  private Integer[] ruleIds;
+}
@@ -13,8 +13,17 @@
  */
 package org.gbif.occurrence.annotation.model;
 
+import java.io.IOException;
 import java.util.Date;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
 import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -38,20 +47,95 @@ public class Rule {
     OTHER
   }
 
+  // The vote a user may hold on a rule, either for or against it
+  public enum VOTE_TYPE {
+    SUPPORT,
+    CONTEST
+  }
+
+  // The formats the geometry may be returned in
+  public enum GEOMETRY_FORMAT {
+    WKT,
+    GEOJSON
+  }
+
   private Integer id;
   private Integer taxonKey;
+
+  // when set the rule also applies to records of descendant taxa
+  @Builder.Default private Boolean includeDescendants = false;
+
   private String datasetKey;
-  @NotNull private String geometry;
+  // WKT, or GeoJSON when requested on read; left out of rule summaries
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  @JsonSerialize(using = GeometrySerializer.class)
+  @NotNull
+  private String geometry;
+
+  // the geometry as WKB, read for the matcher only
+  @JsonIgnore private byte[] geometryWkb;
+
+  // set on write for a globe spanning polygon with holes, in which case only the holes are matched
+  @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+  @Builder.Default
+  private Boolean inverted = false;
+
+  // the holes of an inverted rule as a WKB MULTIPOLYGON
+  @JsonIgnore private byte[] holes;
   private ANNOTATION_TYPE annotation;
   private String[] basisOfRecord;
   @Builder.Default private Boolean basisOfRecordNegated = false;
   private String yearRange;
+
+  // the parsed yearRange, set on write and stored as an int4range for containment queries
+  @JsonIgnore private String yearBounds;
+
   private Integer rulesetId;
   private Integer projectId;
+  // votes are recorded through the support and contest endpoints, not by writing the rule
+  @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+  @JsonInclude(JsonInclude.Include.NON_NULL)
   private String[] supportedBy;
+
+  @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+  @JsonInclude(JsonInclude.Include.NON_NULL)
   private String[] contestedBy;
+
+  @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+  @Builder.Default
+  private Integer supportCount = 0;
+
+  @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+  @Builder.Default
+  private Integer contestCount = 0;
+
   private Date created;
   private String createdBy;
+  private Date modified;
+  private String modifiedBy;
   private Date deleted;
   private String deletedBy;
+
+  /** The basisOfRecord as stored for filtering, see {@link BasisOfRecordMask}. */
+  @JsonIgnore
+  public Integer getBasisOfRecordMask() {
+    return BasisOfRecordMask.of(basisOfRecord);
+  }
+
+  /** Writes a GeoJSON geometry as a JSON object, and WKT, which never starts with "{", as text. */
+  static class GeometrySerializer extends StdSerializer<String> {
+    GeometrySerializer() {
+      super(String.class);
+    }
+
+    @Override
+    public void serialize(String geometry, JsonGenerator generator, SerializerProvider provider)
+        throws IOException {
+      if (geometry.startsWith("{")) {
+        generator.writeRawValue(geometry);
+      } else {
+        generator.writeString(geometry);
+      }
+    }
+  }
 }
@@ -0,0 +1,75 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.occurrence.annotation.model;
+
+import lombok.Value;
+
+/**
+ * The inclusive bounds of a rule's yearRange, written as "from,to" with "*" for an open bound
+ * (e.g. "1000,2025", "*,1990", "1000,*"). This is the same interpretation as the year_bounds
+ * column in the database.
+ */
+@Value
+public class YearRange {
+  int from;
+  int to;
+
+  /**
+   * @throws IllegalArgumentException if the range is malformed or its bounds are reversed
+   */
+  public static YearRange parse(String yearRange) {
+    String[] bounds = yearRange.split(",", -1);
+    if (bounds.length != 2) {
+      throw new IllegalArgumentException("Year range must be given as 'from,to': " + yearRange);
+    }
+    try {
+      YearRange range =
+          new YearRange(
+              parseBound(bounds[0], Integer.MIN_VALUE), parseBound(bounds[1], Integer.MAX_VALUE));
+      if (range.from > range.to) {
+        throw new IllegalArgumentException("Year range is reversed: " + yearRange);
+      }
+      return range;
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Year range must be given as 'from,to': " + yearRange);
+    }
+  }
+
+  private static int parseBound(String bound, int open) {
+    String trimmed = bound.trim();
+    return trimmed.isEmpty() || "*".equals(trimmed) ? open : Integer.parseInt(trimmed);
+  }
+
+  /**
+   * Parses the yearRange into an int4range literal for the year_bounds column, e.g. "[1000,2025]"
+   * or "[,1990]". Returns null for a null yearRange.
+   *
+   * @throws IllegalArgumentException if the range is malformed or its bounds are reversed
+   */
+  public static String toBounds(String yearRange) {
+    if (yearRange == null) {
+      return null;
+    }
+    YearRange range = parse(yearRange);
+    return "["
+        + (range.from == Integer.MIN_VALUE ? "" : range.from)
+        + ","
+        + (range.to == Integer.MAX_VALUE ? "" : range.to)
+        + "]";
+  }
+
+  public boolean contains(int year) {
+    return year >= from && year <= to;
+  }
+}
@@ -0,0 +1,30 @@
+-- Votes for (support) and against (contest) rules, moved out of the arrays on the rule so that
+-- voting is a small insert or delete and the rules a user voted on can be found by index.
+-- The rule keeps a count of each kind of vote.
+
+CREATE TABLE rule_vote (
+    rule_id INT NOT NULL REFERENCES rule ON DELETE CASCADE DEFERRABLE,
+    username TEXT NOT NULL,
+    kind TEXT NOT NULL CHECK (kind IN ('SUPPORT', 'CONTEST')),
+    created TIMESTAMP WITHOUT TIME ZONE NOT NULL DEFAULT now(),
+    PRIMARY KEY (rule_id, username, kind)
+);
+
+CREATE INDEX rule_vote_username_idx ON rule_vote (username, kind, rule_id);
+
+INSERT INTO rule_vote (rule_id, username, kind)
+SELECT DISTINCT id, unnest(supported_by), 'SUPPORT' FROM rule;
+
+INSERT INTO rule_vote (rule_id, username, kind)
+SELECT DISTINCT id, unnest(contested_by), 'CONTEST' FROM rule;
+
+ALTER TABLE rule ADD COLUMN support_count INT NOT NULL DEFAULT 0;
+ALTER TABLE rule ADD COLUMN contest_count INT NOT NULL DEFAULT 0;
+
+UPDATE rule SET
+    support_count = (SELECT count(*) FROM rule_vote v WHERE v.rule_id = rule.id AND v.kind = 'SUPPORT'),
+    contest_count = (SELECT count(*) FROM rule_vote v WHERE v.rule_id = rule.id AND v.kind = 'CONTEST')
+WHERE id IN (SELECT rule_id FROM rule_vote);
+
+ALTER TABLE rule DROP COLUMN supported_by;
+ALTER TABLE rule DROP COLUMN contested_by;
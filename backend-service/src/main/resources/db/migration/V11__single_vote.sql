@@ -0,0 +1,13 @@
+-- A user holds at most one vote on a rule, so that changing between support and contest is a
+-- single upsert. Where a race left both, the support is kept.
+
+DELETE FROM rule_vote c
+WHERE c.kind = 'CONTEST'
+  AND EXISTS (SELECT 1 FROM rule_vote s WHERE s.rule_id = c.rule_id AND s.username = c.username AND s.kind = 'SUPPORT');
+
+UPDATE rule SET
+    contest_count = (SELECT count(*) FROM rule_vote v WHERE v.rule_id = rule.id AND v.kind = 'CONTEST')
+WHERE contest_count > 0;
+
+ALTER TABLE rule_vote DROP CONSTRAINT rule_vote_pkey;
+ALTER TABLE rule_vote ADD PRIMARY KEY (rule_id, username);
@@ -0,0 +1,6 @@
+-- A trigram index for the comment text filter of the rule list, which matches a substring and so
+-- cannot use a btree. pg_trgm is a trusted extension, so the database owner can create it.
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX IF NOT EXISTS comment_comment_trgm_idx ON comment USING gin (comment gin_trgm_ops) WHERE deleted IS NULL;
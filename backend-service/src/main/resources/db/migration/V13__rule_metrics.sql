@@ -0,0 +1,172 @@
+-- Rule metrics maintained by triggers, so that a read of /rule/metrics with at most one filter is
+-- a single row rather than an aggregate over the rule table. There is a row for each creator,
+-- taxon, dataset, ruleset and project with live rules, which are the filters of the metrics, and
+-- the totals are striped over 16 rows so that writes to different rules seldom wait on the same
+-- row. A combination of filters is aggregated from the rule table instead.
+
+CREATE TABLE rule_metrics (
+    scope TEXT NOT NULL CHECK (scope IN ('ALL', 'CREATED_BY', 'TAXON_KEY', 'DATASET_KEY', 'RULESET_ID', 'PROJECT_ID')),
+    -- the creator, taxon, dataset, ruleset or project as text ('' for none), or the stripe of ALL
+    key TEXT NOT NULL,
+    rule_count INT NOT NULL,
+    support_count INT NOT NULL,
+    contest_count INT NOT NULL,
+    dataset_count INT NOT NULL,
+    taxon_count INT NOT NULL,
+    project_count INT NOT NULL,
+    PRIMARY KEY (scope, key)
+);
+
+-- The live rules of each scope per dataset, taxon and project, which keep the distinct counts of
+-- rule_metrics. The values of ALL are under the key ''.
+CREATE TABLE rule_metrics_value (
+    scope TEXT NOT NULL,
+    key TEXT NOT NULL,
+    kind TEXT NOT NULL CHECK (kind IN ('DATASET_KEY', 'TAXON_KEY', 'PROJECT_ID')),
+    value TEXT NOT NULL,
+    rule_count INT NOT NULL,
+    PRIMARY KEY (scope, key, kind, value)
+);
+
+-- A live rule added to (rules 1) or removed from (rules -1) the metrics
+CREATE TYPE rule_metrics_change AS (
+    id INT,
+    created_by TEXT,
+    taxon_key INT,
+    dataset_key TEXT,
+    ruleset_id INT,
+    project_id INT,
+    rules INT,
+    supports INT,
+    contests INT
+);
+
+-- Each change once for every scope it counts in, with its stripe of the totals
+CREATE FUNCTION rule_metrics_scoped(changes rule_metrics_change[])
+RETURNS TABLE (scope TEXT, key TEXT, stripe TEXT, dataset_key TEXT, taxon_key TEXT, project_id TEXT,
+    rules INT, supports INT, contests INT) AS $$
+    SELECT s.scope, s.key, (c.id & 15)::text, c.dataset_key, c.taxon_key::text, c.project_id::text,
+        c.rules, c.supports, c.contests
+    FROM unnest(changes) c
+    CROSS JOIN LATERAL (VALUES
+        ('ALL', ''),
+        ('CREATED_BY', COALESCE(c.created_by, '')),
+        ('TAXON_KEY', COALESCE(c.taxon_key::text, '')),
+        ('DATASET_KEY', COALESCE(c.dataset_key, '')),
+        ('RULESET_ID', COALESCE(c.ruleset_id::text, '')),
+        ('PROJECT_ID', COALESCE(c.project_id::text, ''))) s (scope, key)
+$$ LANGUAGE sql IMMUTABLE;
+
+-- Applies the changes, netted per row. The rows are locked in key order, the values before the
+-- counts they change, so that concurrent writes cannot deadlock, and rows left counting nothing
+-- are deleted. Only rows already locked by the changes are deleted, so the deletes never wait.
+CREATE FUNCTION rule_metrics_add(changes rule_metrics_change[]) RETURNS void AS $$
+BEGIN
+    WITH value_changes AS (
+        SELECT s.scope, s.key, v.kind, v.value, sum(s.rules)::int AS rules
+        FROM rule_metrics_scoped(changes) s
+        CROSS JOIN LATERAL (VALUES
+            ('DATASET_KEY', s.dataset_key), ('TAXON_KEY', s.taxon_key), ('PROJECT_ID', s.project_id)) v (kind, value)
+        WHERE v.value IS NOT NULL
+        GROUP BY s.scope, s.key, v.kind, v.value
+        HAVING sum(s.rules) <> 0
+    ),
+    counted AS (
+        INSERT INTO rule_metrics_value AS m (scope, key, kind, value, rule_count)
+        SELECT scope, key, kind, value, rules FROM value_changes
+        ORDER BY scope, key, kind, value
+        ON CONFLICT (scope, key, kind, value) DO UPDATE SET rule_count = m.rule_count + EXCLUDED.rule_count
+        RETURNING m.scope, m.key, m.kind, m.value, m.rule_count
+    ),
+    -- 1 for a value counted that was not, -1 for a value no longer counted
+    flips AS (
+        SELECT c.scope, c.key, c.kind, c.value,
+            CASE WHEN c.rule_count = 0 THEN -1 WHEN c.rule_count = v.rules AND v.rules > 0 THEN 1 ELSE 0 END AS flip
+        FROM counted c JOIN value_changes v USING (scope, key, kind, value)
+    ),
+    totals AS (
+        SELECT scope, CASE WHEN scope = 'ALL' THEN stripe ELSE key END AS key,
+            rules, supports, contests, 0 AS datasets, 0 AS taxa, 0 AS projects
+        FROM rule_metrics_scoped(changes)
+        UNION ALL
+        SELECT scope, CASE WHEN scope = 'ALL' THEN (hashtext(value) & 15)::text ELSE key END,
+            0, 0, 0,
+            CASE WHEN kind = 'DATASET_KEY' THEN flip ELSE 0 END,
+            CASE WHEN kind = 'TAXON_KEY' THEN flip ELSE 0 END,
+            CASE WHEN kind = 'PROJECT_ID' THEN flip ELSE 0 END
+        FROM flips WHERE flip <> 0
+    )
+    INSERT INTO rule_metrics AS m (scope, key, rule_count, support_count, contest_count, dataset_count, taxon_count, project_count)
+    SELECT scope, key, sum(rules), sum(supports), sum(contests), sum(datasets), sum(taxa), sum(projects)
+    FROM totals
+    GROUP BY scope, key
+    HAVING (sum(rules), sum(supports), sum(contests), sum(datasets), sum(taxa), sum(projects)) <> (0, 0, 0, 0, 0, 0)
+    ORDER BY scope, key
+    ON CONFLICT (scope, key) DO UPDATE SET
+        rule_count = m.rule_count + EXCLUDED.rule_count,
+        support_count = m.support_count + EXCLUDED.support_count,
+        contest_count = m.contest_count + EXCLUDED.contest_count,
+        dataset_count = m.dataset_count + EXCLUDED.dataset_count,
+        taxon_count = m.taxon_count + EXCLUDED.taxon_count,
+        project_count = m.project_count + EXCLUDED.project_count;
+
+    DELETE FROM rule_metrics_value m
+    USING rule_metrics_scoped(changes) s
+    CROSS JOIN LATERAL (VALUES
+        ('DATASET_KEY', s.dataset_key), ('TAXON_KEY', s.taxon_key), ('PROJECT_ID', s.project_id)) v (kind, value)
+    WHERE m.scope = s.scope AND m.key = s.key AND m.kind = v.kind AND m.value = v.value
+      AND m.rule_count = 0;
+
+    DELETE FROM rule_metrics m
+    USING (
+        SELECT scope, CASE WHEN scope = 'ALL' THEN stripe ELSE key END AS key
+        FROM rule_metrics_scoped(changes)
+        UNION
+        SELECT 'ALL', (hashtext(v.value) & 15)::text
+        FROM rule_metrics_scoped(changes) s
+        CROSS JOIN LATERAL (VALUES (s.dataset_key), (s.taxon_key), (s.project_id)) v (value)
+        WHERE s.scope = 'ALL' AND v.value IS NOT NULL
+    ) s
+    WHERE m.scope = s.scope AND m.key = s.key
+      AND (m.rule_count, m.support_count, m.contest_count, m.dataset_count, m.taxon_count, m.project_count)
+          = (0, 0, 0, 0, 0, 0);
+END;
+$$ LANGUAGE plpgsql;
+
+-- Applies the rules changed by a statement in the same transaction, removing the live rules as they
+-- were and adding them as they are, so that an update such as a vote nets to the difference.
+-- Transition tables cannot be given with a column list, so every update of rule fires it.
+CREATE FUNCTION rule_metrics_apply() RETURNS trigger AS $$
+DECLARE
+    changes rule_metrics_change[] := '{}';
+BEGIN
+    IF TG_OP IN ('UPDATE', 'DELETE') THEN
+        changes := changes || ARRAY(
+            SELECT ROW(id, created_by, taxon_key, dataset_key, ruleset_id, project_id,
+                -1, -support_count, -contest_count)::rule_metrics_change
+            FROM old_rows WHERE deleted IS NULL);
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        changes := changes || ARRAY(
+            SELECT ROW(id, created_by, taxon_key, dataset_key, ruleset_id, project_id,
+                1, support_count, contest_count)::rule_metrics_change
+            FROM new_rows WHERE deleted IS NULL);
+    END IF;
+    IF cardinality(changes) > 0 THEN
+        PERFORM rule_metrics_add(changes);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER rule_metrics_insert_trigger AFTER INSERT ON rule
+    REFERENCING NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE FUNCTION rule_metrics_apply();
+CREATE TRIGGER rule_metrics_update_trigger AFTER UPDATE ON rule
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE FUNCTION rule_metrics_apply();
+CREATE TRIGGER rule_metrics_delete_trigger AFTER DELETE ON rule
+    REFERENCING OLD TABLE AS old_rows FOR EACH STATEMENT EXECUTE FUNCTION rule_metrics_apply();
+
+SELECT rule_metrics_add(ARRAY(
+    SELECT ROW(id, created_by, taxon_key, dataset_key, ruleset_id, project_id,
+        1, support_count, contest_count)::rule_metrics_change
+    FROM rule WHERE deleted IS NULL));
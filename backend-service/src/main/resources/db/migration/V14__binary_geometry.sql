@@ -0,0 +1,19 @@
+-- Store rule geometries in the PostGIS binary form rather than as WKT text
+-- The geometry is stored repaired with ST_MakeValid, which leaves a valid geometry as submitted, and
+-- serves both the intersection queries and the matcher, so the separate geom column V7 added for
+-- the queries is dropped. It is rendered as WKT or GeoJSON when read, and the matcher reads it, and
+-- the holes, as WKB.
+-- Existing rules take the geometry V7 parsed and repaired into geom, rather than parsing the text
+-- again, so the rules quarantined there (see rule_invalid_geometry) hold an empty geometry. The
+-- holes were written by the service from a parsed geometry, so they can be converted directly.
+
+ALTER TABLE rule
+    ALTER COLUMN geometry TYPE GEOMETRY(Geometry, 4326) USING geom,
+    ALTER COLUMN holes TYPE GEOMETRY(MultiPolygon, 4326) USING ST_GeomFromText(holes, 4326);
+
+ALTER TABLE rule DROP COLUMN geom;
+
+CREATE INDEX IF NOT EXISTS rule_geom_idx ON rule USING GIST (geometry);
+
+COMMENT ON COLUMN rule.geometry IS 'The geometry as submitted, repaired if it is invalid';
+COMMENT ON COLUMN rule.holes IS 'For inverted rules, the holes of the geometry as a MULTIPOLYGON';
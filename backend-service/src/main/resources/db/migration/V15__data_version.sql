@@ -0,0 +1,13 @@
+-- Versions of the data, for the ETags of the read endpoints. There is one row per project and
+-- ruleset that has changed, and the version of everything is the sum of all rows, so that writes do
+-- not all wait on one row. A write to no project or ruleset bumps one of the rows (ALL, 0..15)
+-- instead. The service bumps them in the transaction of each write, and tags a response with a
+-- version read no later than its content, so a response is never tagged with a version newer than
+-- its content.
+
+CREATE TABLE data_version (
+    kind TEXT NOT NULL CHECK (kind IN ('ALL', 'PROJECT', 'RULESET')),
+    id INT NOT NULL,
+    version BIGINT NOT NULL,
+    PRIMARY KEY (kind, id)
+);
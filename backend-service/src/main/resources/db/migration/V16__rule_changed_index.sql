@@ -0,0 +1,4 @@
+-- Index the time each rule last changed, for the rule index to read the rules changed since its
+-- last sync without scanning the table. GREATEST ignores the times that are not set.
+
+CREATE INDEX IF NOT EXISTS rule_changed_idx ON rule (GREATEST(created, modified, deleted));
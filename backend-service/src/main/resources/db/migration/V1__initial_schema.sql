@@ -1,7 +1,5 @@
-DROP TABLE IF EXISTS comment;
-DROP TABLE IF EXISTS rule;
-DROP TABLE IF EXISTS ruleset;
-DROP TABLE IF EXISTS project;
+-- Initial schema of the occurrence annotation service
+-- Databases created before migrations were introduced are baselined at this version
 
 CREATE TABLE project (
     id SERIAL NOT NULL PRIMARY KEY,
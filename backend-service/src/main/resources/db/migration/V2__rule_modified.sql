@@ -0,0 +1,5 @@
+-- Track modification of rules
+-- The rule index uses these to pick up changes made by other instances
+
+ALTER TABLE rule ADD COLUMN IF NOT EXISTS modified TIMESTAMP WITHOUT TIME ZONE;
+ALTER TABLE rule ADD COLUMN IF NOT EXISTS modified_by TEXT;
@@ -0,0 +1,8 @@
+-- Store inverted (globe spanning, with holes) rule geometries
+-- Existing rules are flagged when they are next updated; until then they are matched against
+-- the full polygon, which gives the same result more slowly
+
+ALTER TABLE rule ADD COLUMN IF NOT EXISTS inverted BOOLEAN NOT NULL DEFAULT FALSE;
+ALTER TABLE rule ADD COLUMN IF NOT EXISTS holes TEXT;
+
+COMMENT ON COLUMN rule.holes IS 'For inverted rules, the holes of the geometry as a WKT MULTIPOLYGON';
@@ -0,0 +1,42 @@
+-- Store the year_range of rules as a typed range, for containment queries
+-- Ranges are written as 'from,to' with '*' or nothing for an open bound (e.g. '1000,2025', '*,1990')
+
+ALTER TABLE rule ADD COLUMN IF NOT EXISTS year_bounds INT4RANGE;
+
+-- The year_range was stored as unchecked text, so a rule may hold one that cannot be parsed or whose
+-- bounds are reversed. Such a rule would never match while still appearing live, so rather than
+-- failing the migration it is logged, logically deleted, and its range kept here so that it can be
+-- corrected and restored by hand.
+CREATE TABLE IF NOT EXISTS rule_invalid_year_range (
+    rule_id INT NOT NULL PRIMARY KEY REFERENCES rule ON DELETE CASCADE,
+    year_range TEXT NOT NULL,
+    error TEXT NOT NULL,
+    created TIMESTAMP WITHOUT TIME ZONE NOT NULL DEFAULT now()
+);
+
+DO $$
+DECLARE
+    r RECORD;
+BEGIN
+    FOR r IN SELECT id, year_range FROM rule WHERE year_range IS NOT NULL AND year_bounds IS NULL ORDER BY id LOOP
+        BEGIN
+            IF r.year_range !~ '^\s*(\*|-?[0-9]+)?\s*,\s*(\*|-?[0-9]+)?\s*$' THEN
+                RAISE EXCEPTION 'Year range must be given as ''from,to''';
+            END IF;
+            UPDATE rule SET year_bounds = int4range(
+                NULLIF(NULLIF(trim(split_part(r.year_range, ',', 1)), '*'), '')::int,
+                NULLIF(NULLIF(trim(split_part(r.year_range, ',', 2)), '*'), '')::int,
+                '[]')
+            WHERE id = r.id;
+        EXCEPTION WHEN OTHERS THEN
+            RAISE WARNING 'Deleting rule % as its year range cannot be parsed: %', r.id, SQLERRM;
+            INSERT INTO rule_invalid_year_range (rule_id, year_range, error) VALUES (r.id, r.year_range, SQLERRM);
+            UPDATE rule SET
+                deleted = COALESCE(deleted, now()),
+                deleted_by = COALESCE(deleted_by, 'year-range-migration')
+            WHERE id = r.id;
+        END;
+    END LOOP;
+END $$;
+
+CREATE INDEX IF NOT EXISTS rule_year_bounds_idx ON rule USING GIST (year_bounds);
@@ -0,0 +1,24 @@
+-- Store the basisOfRecord values of rules as a bitmask
+-- The bit for a value is its position in BasisOfRecordMask.VOCABULARY (counting from 0), and a
+-- value outside the vocabulary has no bit, so matches nothing. This must match the Java code
+-- exactly.
+
+ALTER TABLE rule ADD COLUMN IF NOT EXISTS basis_of_record_mask INT;
+
+UPDATE rule SET basis_of_record_mask = (
+    SELECT bit_or(COALESCE(1 << (array_position(ARRAY[
+        'PRESERVED_SPECIMEN',
+        'FOSSIL_SPECIMEN',
+        'LIVING_SPECIMEN',
+        'OBSERVATION',
+        'HUMAN_OBSERVATION',
+        'MACHINE_OBSERVATION',
+        'MATERIAL_SAMPLE',
+        'LITERATURE',
+        'MATERIAL_CITATION',
+        'OCCURRENCE',
+        'UNKNOWN'
+    ], value) - 1), 0))
+    FROM unnest(basis_of_record) AS value
+)
+WHERE basis_of_record IS NOT NULL;
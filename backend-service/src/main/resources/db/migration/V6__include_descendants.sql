@@ -0,0 +1,3 @@
+-- Allow rules to apply to the descendants of their taxon
+
+ALTER TABLE rule ADD COLUMN IF NOT EXISTS include_descendants BOOLEAN NOT NULL DEFAULT FALSE;
@@ -0,0 +1,39 @@
+-- Store rule geometries as PostGIS geometries, for intersection queries
+-- Requires the PostGIS extension. Invalid geometries are repaired, as they are on write.
+
+CREATE EXTENSION IF NOT EXISTS postgis;
+
+ALTER TABLE rule ADD COLUMN IF NOT EXISTS geom GEOMETRY(Geometry, 4326);
+
+-- The geometry was stored as unchecked text, so a rule may hold one that cannot be parsed. Rather
+-- than failing the migration, such a rule is logged, logically deleted with an empty geom, and its
+-- text kept here so that it can be corrected and restored by hand.
+CREATE TABLE IF NOT EXISTS rule_invalid_geometry (
+    rule_id INT NOT NULL PRIMARY KEY REFERENCES rule ON DELETE CASCADE,
+    geometry TEXT NOT NULL,
+    error TEXT NOT NULL,
+    created TIMESTAMP WITHOUT TIME ZONE NOT NULL DEFAULT now()
+);
+
+DO $$
+DECLARE
+    r RECORD;
+BEGIN
+    FOR r IN SELECT id, geometry FROM rule WHERE geom IS NULL ORDER BY id LOOP
+        BEGIN
+            UPDATE rule SET geom = ST_MakeValid(ST_GeomFromText(r.geometry, 4326)) WHERE id = r.id;
+        EXCEPTION WHEN OTHERS THEN
+            RAISE WARNING 'Deleting rule % as its geometry cannot be parsed: %', r.id, SQLERRM;
+            INSERT INTO rule_invalid_geometry (rule_id, geometry, error) VALUES (r.id, r.geometry, SQLERRM);
+            UPDATE rule SET
+                geom = ST_GeomFromText('GEOMETRYCOLLECTION EMPTY', 4326),
+                deleted = COALESCE(deleted, now()),
+                deleted_by = COALESCE(deleted_by, 'geometry-migration')
+            WHERE id = r.id;
+        END;
+    END LOOP;
+END $$;
+
+ALTER TABLE rule ALTER COLUMN geom SET NOT NULL;
+
+CREATE INDEX IF NOT EXISTS rule_geom_idx ON rule USING GIST (geom);
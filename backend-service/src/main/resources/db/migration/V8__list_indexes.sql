@@ -0,0 +1,23 @@
+-- Indexes for the filters of the rule list, which only returns rules that are not deleted and
+-- orders them by the newest first. Lists are ordered and paged by (created, id), so the id is
+-- included for the seek predicate (created, id) < (?, ?) to be an index condition.
+
+CREATE INDEX IF NOT EXISTS rule_created_id_idx ON rule (created DESC, id DESC) WHERE deleted IS NULL;
+CREATE INDEX IF NOT EXISTS rule_taxon_key_created_id_idx ON rule (taxon_key, created DESC, id DESC) WHERE deleted IS NULL;
+CREATE INDEX IF NOT EXISTS rule_project_id_created_id_idx ON rule (project_id, created DESC, id DESC) WHERE deleted IS NULL;
+CREATE INDEX IF NOT EXISTS rule_ruleset_id_created_id_idx ON rule (ruleset_id, created DESC, id DESC) WHERE deleted IS NULL;
+CREATE INDEX IF NOT EXISTS rule_created_by_created_id_idx ON rule (created_by, created DESC, id DESC) WHERE deleted IS NULL;
+CREATE INDEX IF NOT EXISTS rule_dataset_key_idx ON rule (dataset_key) WHERE deleted IS NULL;
+
+-- Also serves the cascade from deleting a rule
+CREATE INDEX IF NOT EXISTS comment_rule_id_idx ON comment (rule_id);
+
+-- The project and ruleset lists are ordered and paged the same way
+CREATE INDEX IF NOT EXISTS project_created_id_idx ON project (created DESC, id DESC) WHERE deleted IS NULL;
+CREATE INDEX IF NOT EXISTS ruleset_created_id_idx ON ruleset (created DESC, id DESC) WHERE deleted IS NULL;
+CREATE INDEX IF NOT EXISTS ruleset_project_id_created_id_idx ON ruleset (project_id, created DESC, id DESC) WHERE deleted IS NULL;
+
+-- Superseded by the indexes above, where they were created by hand
+DROP INDEX IF EXISTS rule_taxon_key_idx;
+DROP INDEX IF EXISTS rule_ruleset_id_idx;
+DROP INDEX IF EXISTS rule_project_id_idx;
@@ -17,13 +17,15 @@ import org.junit.jupiter.api.extension.AfterAllCallback;
 import org.junit.jupiter.api.extension.BeforeAllCallback;
 import org.junit.jupiter.api.extension.ExtensionContext;
 import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
 
 public class EmbeddedPostgres implements BeforeAllCallback, AfterAllCallback {
   @SuppressWarnings("resource")
   private static final PostgreSQLContainer<?> postgres =
-      new PostgreSQLContainer<>("postgres:17.2")
-          .withDatabaseName("annotations")
-          .withInitScript("test-init.sql");
+      new PostgreSQLContainer<>(
+              DockerImageName.parse("postgis/postgis:13-3.5")
+                  .asCompatibleSubstituteFor("postgres"))
+          .withDatabaseName("annotations");
 
   @Override
   public void beforeAll(ExtensionContext context) {
@@ -0,0 +1,105 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.occurrence.annotation.config;
+
+import org.gbif.occurrence.annotation.EmbeddedPostgres;
+import org.gbif.occurrence.annotation.controller.DataVersions;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Configures the test database as its own replica, told apart by the application name of its
+ * connections, and checks which one read-only transactions use and where their ETags come from.
+ */
+@ExtendWith(EmbeddedPostgres.class)
+@SpringBootTest
+@Import(TestSecurityConfig.class)
+@TestPropertySource(locations = "classpath:test-application.properties")
+public class ReadReplicaConfigTest {
+  private static final String SQL = "SELECT current_setting('application_name')";
+
+  @Autowired private DataSource dataSource;
+  @Autowired private JdbcTemplate jdbcTemplate;
+  @Autowired private PlatformTransactionManager transactionManager;
+  @Autowired private DataVersions dataVersions;
+
+  @DynamicPropertySource
+  static void configureProperties(DynamicPropertyRegistry registry) {
+    PostgreSQLContainer postgres = EmbeddedPostgres.getPostgres();
+    registry.add("spring.datasource.url", postgres::getJdbcUrl);
+    registry.add("spring.datasource.username", postgres::getUsername);
+    registry.add("spring.datasource.password", postgres::getPassword);
+    registry.add("spring.datasource.driver-class-name", postgres::getDriverClassName);
+    registry.add(
+        "annotation.datasource.read.url",
+        () -> {
+          String url = postgres.getJdbcUrl();
+          return url + (url.contains("?") ? "&" : "?") + "ApplicationName=annotation-replica";
+        });
+  }
+
+  @Test
+  public void testReadOnlyTransactionsUseReplica() {
+    assertInstanceOf(LazyConnectionDataSourceProxy.class, dataSource);
+
+    TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+    readOnly.setReadOnly(true);
+    assertEquals(
+        "annotation-replica",
+        readOnly.execute(s -> jdbcTemplate.queryForObject(SQL, String.class)));
+
+    TransactionTemplate readWrite = new TransactionTemplate(transactionManager);
+    assertNotEquals(
+        "annotation-replica",
+        readWrite.execute(s -> jdbcTemplate.queryForObject(SQL, String.class)));
+
+    assertNotEquals("annotation-replica", jdbcTemplate.queryForObject(SQL, String.class));
+  }
+
+  @Test
+  public void testReadOnlyTransactionsReadETagFromReplica() {
+    // a version this instance has not seen, as written through another instance
+    jdbcTemplate.update(
+        "INSERT INTO data_version (kind, id, version) VALUES ('RULESET', 9090911, 41) "
+            + "ON CONFLICT (kind, id) DO UPDATE SET version = 41");
+
+    TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+    readOnly.setReadOnly(true);
+    readOnly.executeWithoutResult(
+        status -> {
+          assertEquals("annotation-replica", jdbcTemplate.queryForObject(SQL, String.class));
+          assertEquals("W/\"RULESET-9090911-41\"", dataVersions.etag(null, 9090911));
+          // the version of everything is the sum of all versions
+          long total =
+              jdbcTemplate.queryForObject("SELECT sum(version) FROM data_version", Long.class);
+          assertEquals("W/\"ALL-0-" + total + "\"", dataVersions.etag(null, null));
+        });
+  }
+}
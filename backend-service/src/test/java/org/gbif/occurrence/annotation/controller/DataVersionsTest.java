@@ -0,0 +1,104 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.occurrence.annotation.controller;
+
+import org.gbif.occurrence.annotation.EmbeddedPostgres;
+import org.gbif.occurrence.annotation.config.TestSecurityConfig;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/** Checks that bumps commit with the write they are part of, and are only seen once they have. */
+@ExtendWith(EmbeddedPostgres.class)
+@SpringBootTest
+@Import(TestSecurityConfig.class)
+@TestPropertySource(locations = "classpath:test-application.properties")
+public class DataVersionsTest {
+  private static final String SQL =
+      "SELECT count(*) FROM data_version WHERE kind = 'RULESET' AND id = ?";
+
+  @Autowired private DataVersions dataVersions;
+  @Autowired private JdbcTemplate jdbcTemplate;
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  @DynamicPropertySource
+  static void configureProperties(DynamicPropertyRegistry registry) {
+    PostgreSQLContainer postgres = EmbeddedPostgres.getPostgres();
+    registry.add("spring.datasource.url", postgres::getJdbcUrl);
+    registry.add("spring.datasource.username", postgres::getUsername);
+    registry.add("spring.datasource.password", postgres::getPassword);
+    registry.add("spring.datasource.driver-class-name", postgres::getDriverClassName);
+  }
+
+  @Test
+  public void testBumpSeenOnCommit() {
+    TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+    transaction.executeWithoutResult(
+        status -> {
+          dataVersions.bump(null, 9090901);
+          assertEquals("W/\"RULESET-9090901-0\"", dataVersions.etag(null, 9090901));
+        });
+    assertEquals("W/\"RULESET-9090901-1\"", dataVersions.etag(null, 9090901));
+    assertEquals(1, jdbcTemplate.queryForObject(SQL, Integer.class, 9090901));
+  }
+
+  @Test
+  public void testBumpRolledBack() {
+    TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+    transaction.executeWithoutResult(
+        status -> {
+          dataVersions.bump(null, 9090902);
+          status.setRollbackOnly();
+        });
+    assertEquals("W/\"RULESET-9090902-0\"", dataVersions.etag(null, 9090902));
+    assertEquals(0, jdbcTemplate.queryForObject(SQL, Integer.class, 9090902));
+  }
+
+  @Test
+  public void testEverythingFollowsEachBump() {
+    String allSql = "SELECT COALESCE(sum(version), 0) FROM data_version WHERE kind = 'ALL'";
+    Long all = jdbcTemplate.queryForObject(allSql, Long.class);
+    String etag = dataVersions.etag(null, null);
+
+    // a write to a ruleset changes everything without bumping a row of it
+    dataVersions.bump(null, 9090904);
+    assertNotEquals(etag, dataVersions.etag(null, null));
+    assertEquals(all, jdbcTemplate.queryForObject(allSql, Long.class));
+
+    // a write to neither bumps a stripe of everything
+    etag = dataVersions.etag(null, null);
+    dataVersions.bump(null, null);
+    assertNotEquals(etag, dataVersions.etag(null, null));
+    assertEquals(all + 1, jdbcTemplate.queryForObject(allSql, Long.class));
+  }
+
+  @Test
+  public void testBumpWithoutTransaction() {
+    dataVersions.bump(null, 9090903);
+    assertEquals("W/\"RULESET-9090903-1\"", dataVersions.etag(null, 9090903));
+  }
+}
@@ -18,6 +18,8 @@ import org.gbif.occurrence.annotation.config.TestSecurityConfig;
 import org.gbif.occurrence.annotation.model.Project;
 import org.gbif.occurrence.annotation.model.Rule;
 
+import java.util.Map;
+
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -25,6 +27,7 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
@@ -35,6 +38,7 @@ import org.testcontainers.containers.PostgreSQLContainer;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -49,6 +53,8 @@ public class MetricsControllerTest {
 
   @Autowired private ObjectMapper objectMapper;
 
+  @Autowired private JdbcTemplate jdbcTemplate;
+
   @DynamicPropertySource
   static void configureProperties(DynamicPropertyRegistry registry) {
     PostgreSQLContainer postgres = EmbeddedPostgres.getPostgres();
@@ -394,6 +400,119 @@ public class MetricsControllerTest {
         .andExpect(jsonPath("$.projectCount", greaterThanOrEqualTo(1)));
   }
 
+  @Test
+  @WithMockUser(
+      username = "metrics-user-7",
+      roles = {"USER"})
+  public void testMetricsFollowVotesAndDeletes() throws Exception {
+    Project project = new Project();
+    project.setName("Maintained Metrics Test");
+    project.setDescription("Testing metrics are kept up to date");
+
+    String projectResponse =
+        mockMvc
+            .perform(
+                post("/occurrence/experimental/annotation/project")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(project)))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+
+    Project createdProject = objectMapper.readValue(projectResponse, Project.class);
+
+    Rule[] created = new Rule[2];
+    for (int i = 0; i < created.length; i++) {
+      Rule rule =
+          Rule.builder()
+              .taxonKey(77777 + i)
+              .datasetKey("dataset-maintained")
+              .geometry("POLYGON((0 0, 0 1, 1 1, 1 0, 0 0))")
+              .annotation(Rule.ANNOTATION_TYPE.NATIVE)
+              .rulesetId(1)
+              .projectId(createdProject.getId())
+              .build();
+
+      String ruleResponse =
+          mockMvc
+              .perform(
+                  post("/occurrence/experimental/annotation/rule")
+                      .contentType(MediaType.APPLICATION_JSON)
+                      .content(objectMapper.writeValueAsString(rule)))
+              .andExpect(status().isOk())
+              .andReturn()
+              .getResponse()
+              .getContentAsString();
+      created[i] = objectMapper.readValue(ruleResponse, Rule.class);
+    }
+
+    mockMvc
+        .perform(
+            post("/occurrence/experimental/annotation/rule/" + created[0].getId() + "/support"))
+        .andExpect(status().isOk());
+    mockMvc
+        .perform(
+            post("/occurrence/experimental/annotation/rule/" + created[1].getId() + "/contest"))
+        .andExpect(status().isOk());
+
+    mockMvc
+        .perform(
+            get("/occurrence/experimental/annotation/rule/metrics")
+                .param("projectId", String.valueOf(createdProject.getId())))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.ruleCount", is(2)))
+        .andExpect(jsonPath("$.taxonCount", is(2)))
+        .andExpect(jsonPath("$.datasetCount", is(1)))
+        .andExpect(jsonPath("$.supportCount", is(1)))
+        .andExpect(jsonPath("$.contestCount", is(1)));
+
+    // a deleted rule no longer counts, nor do its votes
+    mockMvc
+        .perform(delete("/occurrence/experimental/annotation/rule/" + created[1].getId()))
+        .andExpect(status().isOk());
+
+    mockMvc
+        .perform(
+            get("/occurrence/experimental/annotation/rule/metrics")
+                .param("projectId", String.valueOf(createdProject.getId())))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.ruleCount", is(1)))
+        .andExpect(jsonPath("$.taxonCount", is(1)))
+        .andExpect(jsonPath("$.supportCount", is(1)))
+        .andExpect(jsonPath("$.contestCount", is(0)));
+
+    // and the metrics of its taxon, which has no rules left, are removed
+    assertEquals(
+        0,
+        jdbcTemplate.queryForObject(
+            "SELECT count(*) FROM rule_metrics WHERE scope = 'TAXON_KEY' AND key = '77778'",
+            Integer.class));
+    assertEquals(
+        0,
+        jdbcTemplate.queryForObject(
+            "SELECT count(*) FROM rule_metrics_value WHERE kind = 'TAXON_KEY' AND value = '77778'",
+            Integer.class));
+  }
+
+  @Test
+  public void testMaintainedMetricsMatchRules() throws Exception {
+    Map<String, Object> rules =
+        jdbcTemplate.queryForMap(
+            "SELECT count(*) AS rules, count(DISTINCT dataset_key) AS datasets, "
+                + "count(DISTINCT taxon_key) AS taxa, count(DISTINCT project_id) AS projects, "
+                + "COALESCE(SUM(support_count), 0) AS supports FROM rule WHERE deleted IS NULL");
+
+    mockMvc
+        .perform(get("/occurrence/experimental/annotation/rule/metrics"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.ruleCount", is(((Number) rules.get("rules")).intValue())))
+        .andExpect(jsonPath("$.datasetCount", is(((Number) rules.get("datasets")).intValue())))
+        .andExpect(jsonPath("$.taxonCount", is(((Number) rules.get("taxa")).intValue())))
+        .andExpect(jsonPath("$.projectCount", is(((Number) rules.get("projects")).intValue())))
+        .andExpect(jsonPath("$.supportCount", is(((Number) rules.get("supports")).intValue())));
+  }
+
   @Test
   public void testMetricsForNonExistentUsername() throws Exception {
     mockMvc
@@ -15,7 +15,13 @@ package org.gbif.occurrence.annotation.controller;
 
 import org.gbif.occurrence.annotation.EmbeddedPostgres;
 import org.gbif.occurrence.annotation.config.TestSecurityConfig;
+import org.gbif.occurrence.annotation.mapper.ProjectMapper;
+import org.gbif.occurrence.annotation.model.DeleteCounts;
 import org.gbif.occurrence.annotation.model.Project;
+import org.gbif.occurrence.annotation.model.Rule;
+import org.gbif.occurrence.annotation.model.Ruleset;
+
+import java.util.Map;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -24,6 +30,7 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
@@ -34,6 +41,9 @@ import org.testcontainers.containers.PostgreSQLContainer;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -48,6 +58,12 @@ public class ProjectControllerTest {
 
   @Autowired private ObjectMapper objectMapper;
 
+  @Autowired private ProjectMapper projectMapper;
+
+  @Autowired private OrphanedRuleSweep orphanedRuleSweep;
+
+  @Autowired private JdbcTemplate jdbcTemplate;
+
   @DynamicPropertySource
   static void configureProperties(DynamicPropertyRegistry registry) {
     PostgreSQLContainer postgres = EmbeddedPostgres.getPostgres();
@@ -283,6 +299,145 @@ public class ProjectControllerTest {
         .andExpect(jsonPath("$.deletedBy", is("frank")));
   }
 
+  @Test
+  @WithMockUser(
+      username = "frank",
+      roles = {"USER"})
+  public void testDeleteProjectCascades() throws Exception {
+    // more rules than the test batch size, so that they are deleted in several batches
+    Ruleset ruleset = createProjectWithRules("Cascade Delete Test Project", 6060600, 5);
+
+    mockMvc
+        .perform(delete("/occurrence/experimental/annotation/project/{id}", ruleset.getProjectId()))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.deleted", notNullValue()));
+
+    mockMvc
+        .perform(get("/occurrence/experimental/annotation/ruleset/{id}", ruleset.getId()))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.deleted", notNullValue()));
+
+    mockMvc
+        .perform(
+            get("/occurrence/experimental/annotation/rule")
+                .param("projectId", String.valueOf(ruleset.getProjectId())))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$", hasSize(0)));
+
+    // two rules with the project, then batches of two and one, each committed at its own time
+    Map<String, Object> deleted =
+        jdbcTemplate.queryForMap(
+            "SELECT count(*) AS rules, count(DISTINCT deleted) AS batches FROM rule "
+                + "WHERE project_id = ? AND deleted_by = 'frank'",
+            ruleset.getProjectId());
+    assertEquals(5L, deleted.get("rules"));
+    assertEquals(3L, deleted.get("batches"));
+  }
+
+  @Test
+  @WithMockUser(
+      username = "frank",
+      roles = {"USER"})
+  public void testDeleteProjectResumes() throws Exception {
+    Ruleset ruleset = createProjectWithRules("Resumed Delete Test Project", 6060610, 5);
+
+    // as if the delete failed after its first statement
+    DeleteCounts counts = projectMapper.deleteCascade(ruleset.getProjectId(), "frank", 2);
+    assertEquals(1, counts.getProjects());
+    assertArrayEquals(new Integer[] {ruleset.getId()}, counts.getRulesetIds());
+    assertEquals(2, counts.getRuleIds().length);
+    assertEquals(3, liveRules(ruleset.getProjectId()));
+
+    mockMvc
+        .perform(delete("/occurrence/experimental/annotation/project/{id}", ruleset.getProjectId()))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.deleted", notNullValue()));
+    assertEquals(0, liveRules(ruleset.getProjectId()));
+  }
+
+  @Test
+  @WithMockUser(
+      username = "frank",
+      roles = {"USER"})
+  public void testSweepDeletesOrphanedRules() throws Exception {
+    Ruleset ruleset = createProjectWithRules("Swept Delete Test Project", 6060620, 5);
+    projectMapper.deleteCascade(ruleset.getProjectId(), "frank", 2);
+    assertEquals(3, liveRules(ruleset.getProjectId()));
+
+    assertTrue(orphanedRuleSweep.sweep() >= 3);
+    assertEquals(0, liveRules(ruleset.getProjectId()));
+    assertEquals(
+        5,
+        jdbcTemplate.queryForObject(
+            "SELECT count(*) FROM rule WHERE project_id = ? AND deleted_by = 'frank'",
+            Integer.class,
+            ruleset.getProjectId()));
+  }
+
+  /** Creates a project with a ruleset holding the given number of rules, returning the ruleset. */
+  private Ruleset createProjectWithRules(String name, int taxonKey, int rules) throws Exception {
+    Project project = new Project();
+    project.setName(name);
+    project.setDescription("Project deleted with its rulesets and rules");
+
+    String response =
+        mockMvc
+            .perform(
+                post("/occurrence/experimental/annotation/project")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(project)))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+
+    Project createdProject = objectMapper.readValue(response, Project.class);
+
+    Ruleset ruleset = new Ruleset();
+    ruleset.setProjectId(createdProject.getId());
+    ruleset.setName(name + " Ruleset");
+    ruleset.setDescription("Deleted with the project");
+
+    response =
+        mockMvc
+            .perform(
+                post("/occurrence/experimental/annotation/ruleset")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(ruleset)))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+
+    Ruleset createdRuleset = objectMapper.readValue(response, Ruleset.class);
+
+    for (int i = 0; i < rules; i++) {
+      Rule rule =
+          Rule.builder()
+              .taxonKey(taxonKey + i)
+              .geometry("POLYGON((0 0, 0 1, 1 1, 1 0, 0 0))")
+              .annotation(Rule.ANNOTATION_TYPE.NATIVE)
+              .rulesetId(createdRuleset.getId())
+              .projectId(createdProject.getId())
+              .build();
+
+      mockMvc
+          .perform(
+              post("/occurrence/experimental/annotation/rule")
+                  .contentType(MediaType.APPLICATION_JSON)
+                  .content(objectMapper.writeValueAsString(rule)))
+          .andExpect(status().isOk());
+    }
+    return createdRuleset;
+  }
+
+  private int liveRules(int projectId) {
+    return jdbcTemplate.queryForObject(
+        "SELECT count(*) FROM rule WHERE project_id = ? AND deleted IS NULL",
+        Integer.class,
+        projectId);
+  }
+
   @Test
   @WithMockUser(
       username = "unauthorized",
@@ -15,8 +15,20 @@ package org.gbif.occurrence.annotation.controller;
 
 import org.gbif.occurrence.annotation.EmbeddedPostgres;
 import org.gbif.occurrence.annotation.config.TestSecurityConfig;
+import org.gbif.occurrence.annotation.mapper.EntityCache;
+import org.gbif.occurrence.annotation.matcher.RuleIndex;
+import org.gbif.occurrence.annotation.matcher.RuleMatcher;
+import org.gbif.occurrence.annotation.model.Classification;
+import org.gbif.occurrence.annotation.model.Occurrence;
 import org.gbif.occurrence.annotation.model.Rule;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -29,11 +41,17 @@ import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.testcontainers.containers.PostgreSQLContainer;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -48,6 +66,16 @@ public class RuleControllerTest {
 
   @Autowired private ObjectMapper objectMapper;
 
+  @Autowired private RuleMatcher ruleMatcher;
+
+  @Autowired private RuleController ruleController;
+
+  @Autowired private RuleIndex ruleIndex;
+
+  @Autowired private EntityCache<Rule> ruleCache;
+
+  @Autowired private PlatformTransactionManager transactionManager;
+
   @DynamicPropertySource
   static void configureProperties(DynamicPropertyRegistry registry) {
     PostgreSQLContainer postgres = EmbeddedPostgres.getPostgres();
@@ -586,4 +614,755 @@ public class RuleControllerTest {
         .andExpect(status().isOk())
         .andExpect(jsonPath("$", hasSize(0)));
   }
+
+  @Test
+  @WithMockUser(
+      username = "classify-user",
+      roles = {"USER"})
+  public void testClassifyOccurrences() throws Exception {
+    int taxonKey = 7070707;
+    Rule rule =
+        Rule.builder()
+            .taxonKey(taxonKey)
+            .geometry("POLYGON((10 10, 10 20, 20 20, 20 10, 10 10))")
+            .annotation(Rule.ANNOTATION_TYPE.SUSPICIOUS)
+            .basisOfRecord(new String[] {"FOSSIL_SPECIMEN"})
+            .basisOfRecordNegated(true)
+            .yearRange("1900,*")
+            .rulesetId(1)
+            .projectId(1)
+            .build();
+
+    String ruleResponse =
+        mockMvc
+            .perform(
+                post("/occurrence/experimental/annotation/rule")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(rule)))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+    Rule created = objectMapper.readValue(ruleResponse, Rule.class);
+
+    List<Occurrence> occurrences =
+        List.of(
+            // inside the polygon
+            new Occurrence(15.0, 15.0, taxonKey, null, "HUMAN_OBSERVATION", 2000),
+            // outside the polygon
+            new Occurrence(25.0, 25.0, taxonKey, null, "HUMAN_OBSERVATION", 2000),
+            // excluded by the negated basisOfRecord
+            new Occurrence(15.0, 15.0, taxonKey, null, "FOSSIL_SPECIMEN", 2000),
+            // outside the year range
+            new Occurrence(15.0, 15.0, taxonKey, null, "HUMAN_OBSERVATION", 1850),
+            // a different taxon
+            new Occurrence(15.0, 15.0, taxonKey + 1, null, "HUMAN_OBSERVATION", 2000),
+            // no coordinates
+            new Occurrence(null, null, taxonKey, null, "HUMAN_OBSERVATION", 2000),
+            // no basisOfRecord, which the negated basisOfRecord does not exclude
+            new Occurrence(15.0, 15.0, taxonKey, null, null, 2000));
+
+    mockMvc
+        .perform(
+            post("/occurrence/experimental/annotation/rule/classify")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(occurrences)))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$", hasSize(7)))
+        .andExpect(jsonPath("$[0].matches", hasSize(1)))
+        .andExpect(jsonPath("$[0].matches[0].ruleId", is(created.getId())))
+        .andExpect(jsonPath("$[0].matches[0].annotation", is("SUSPICIOUS")))
+        .andExpect(jsonPath("$[1].matches", hasSize(0)))
+        .andExpect(jsonPath("$[2].matches", hasSize(0)))
+        .andExpect(jsonPath("$[3].matches", hasSize(0)))
+        .andExpect(jsonPath("$[4].matches", hasSize(0)))
+        .andExpect(jsonPath("$[5].matches", hasSize(0)))
+        .andExpect(jsonPath("$[6].matches", hasSize(1)));
+  }
+
+  @Test
+  @WithMockUser(
+      username = "classify-user",
+      roles = {"USER"})
+  public void testClassifyFollowsRuleChanges() throws Exception {
+    int taxonKey = 7070708;
+    Rule rule =
+        Rule.builder()
+            .taxonKey(taxonKey)
+            .geometry("POLYGON((10 10, 10 20, 20 20, 20 10, 10 10))")
+            .annotation(Rule.ANNOTATION_TYPE.INTRODUCED)
+            .rulesetId(1)
+            .projectId(1)
+            .build();
+
+    String ruleResponse =
+        mockMvc
+            .perform(
+                post("/occurrence/experimental/annotation/rule")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(rule)))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+    Rule created = objectMapper.readValue(ruleResponse, Rule.class);
+
+    String occurrences =
+        objectMapper.writeValueAsString(
+            List.of(
+                new Occurrence(15.0, 15.0, taxonKey, null, null, null),
+                new Occurrence(35.0, 35.0, taxonKey, null, null, null)));
+
+    mockMvc
+        .perform(
+            post("/occurrence/experimental/annotation/rule/classify")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(occurrences))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0].matches", hasSize(1)))
+        .andExpect(jsonPath("$[1].matches", hasSize(0)));
+
+    // moving the rule is reflected immediately
+    created.setGeometry("POLYGON((30 30, 30 40, 40 40, 40 30, 30 30))");
+    mockMvc
+        .perform(
+            put("/occurrence/experimental/annotation/rule/" + created.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(created)))
+        .andExpect(status().isOk());
+
+    mockMvc
+        .perform(
+            post("/occurrence/experimental/annotation/rule/classify")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(occurrences))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0].matches", hasSize(0)))
+        .andExpect(jsonPath("$[1].matches", hasSize(1)));
+
+    // deleted rules no longer match
+    mockMvc
+        .perform(delete("/occurrence/experimental/annotation/rule/" + created.getId()))
+        .andExpect(status().isOk());
+
+    mockMvc
+        .perform(
+            post("/occurrence/experimental/annotation/rule/classify")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(occurrences))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0].matches", hasSize(0)))
+        .andExpect(jsonPath("$[1].matches", hasSize(0)));
+  }
+
+  @Test
+  @WithMockUser(
+      username = "classify-user",
+      roles = {"USER"})
+  public void testClassifyInParallel() throws Exception {
+    int taxonKey = 7070727;
+    String[] geometries = {
+      "POLYGON((10 10, 10 20, 20 20, 20 10, 10 10))", "POLYGON((30 30, 30 40, 40 40, 40 30, 30 30))"
+    };
+    for (int i = 0; i < geometries.length; i++) {
+      Rule rule =
+          Rule.builder()
+              .taxonKey(taxonKey + i)
+              .geometry(geometries[i])
+              .annotation(Rule.ANNOTATION_TYPE.SUSPICIOUS)
+              .rulesetId(1)
+              .projectId(1)
+              .build();
+      mockMvc
+          .perform(
+              post("/occurrence/experimental/annotation/rule")
+                  .contentType(MediaType.APPLICATION_JSON)
+                  .content(objectMapper.writeValueAsString(rule)))
+          .andExpect(status().isOk());
+    }
+
+    // many more records than the task size, spread over three taxa and several tiles so that
+    // they are classified out of order by many tasks
+    List<Occurrence> occurrences = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      occurrences.add(
+          new Occurrence(
+              5.0 + i * 7 % 40, 5.0 + i * 11 % 40, taxonKey + i % 3, null, null, 2000));
+    }
+
+    List<Classification> classifications = ruleMatcher.classify(occurrences);
+    assertEquals(occurrences.size(), classifications.size());
+    int matched = 0;
+    for (int i = 0; i < occurrences.size(); i++) {
+      assertEquals(
+          ruleMatcher.classify(occurrences.get(i)), classifications.get(i), "Record " + i);
+      matched += classifications.get(i).getMatches().size();
+    }
+    assertTrue(matched > 0, "Some records match");
+  }
+
+  @Test
+  @WithMockUser(
+      username = "classify-user",
+      roles = {"USER"})
+  public void testClassifyTooManyRecords() throws Exception {
+    List<Occurrence> occurrences = new ArrayList<>();
+    for (int i = 0; i < 501; i++) {
+      occurrences.add(new Occurrence(10.0, 10.0, 7070728, null, null, null));
+    }
+
+    assertThrows(
+        Exception.class,
+        () ->
+            mockMvc.perform(
+                post("/occurrence/experimental/annotation/rule/classify")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(occurrences))));
+
+    mockMvc
+        .perform(
+            post("/occurrence/experimental/annotation/rule/classify")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(occurrences.subList(0, 500))))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$", hasSize(500)));
+  }
+
+  @Test
+  @WithMockUser(
+      username = "classify-user",
+      roles = {"USER"})
+  public void testClassifyDownload() throws Exception {
+    int taxonKey = 7070709;
+    Rule rule =
+        Rule.builder()
+            .taxonKey(taxonKey)
+            .geometry("POLYGON((10 10, 10 20, 20 20, 20 10, 10 10))")
+            .annotation(Rule.ANNOTATION_TYPE.SUSPICIOUS)
+            .rulesetId(1)
+            .projectId(1)
+            .build();
+
+    String ruleResponse =
+        mockMvc
+            .perform(
+                post("/occurrence/experimental/annotation/rule")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(rule)))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+    Rule created = objectMapper.readValue(ruleResponse, Rule.class);
+
+    // a SIMPLE_CSV download is a zip holding one tab separated file
+    String csv =
+        "gbifID\tdecimalLatitude\tdecimalLongitude\ttaxonKey\n"
+            + "1\t15.0\t15.0\t"
+            + taxonKey
+            + "\n"
+            + "2\t25.0\t25.0\t"
+            + taxonKey
+            + "\n"
+            + "3\t\t\t"
+            + taxonKey
+            + "\n";
+    ByteArrayOutputStream zip = new ByteArrayOutputStream();
+    try (ZipOutputStream out = new ZipOutputStream(zip)) {
+      out.putNextEntry(new ZipEntry("0000001-000000000000001.csv"));
+      out.write(csv.getBytes(StandardCharsets.UTF_8));
+      out.closeEntry();
+    }
+
+    String annotated =
+        mockMvc
+            .perform(
+                post("/occurrence/experimental/annotation/rule/classify/download")
+                    .contentType("application/zip")
+                    .content(zip.toByteArray()))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Content-Disposition", containsString("annotated.tsv")))
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+
+    String[] lines = annotated.split("\n");
+    assertEquals(4, lines.length);
+    assertEquals(
+        "gbifID\tdecimalLatitude\tdecimalLongitude\ttaxonKey\tis_suspicious\thas_conflict\trule_ids",
+        lines[0]);
+    assertEquals(
+        "1\t15.0\t15.0\t" + taxonKey + "\ttrue\tfalse\t" + created.getId(), lines[1]);
+    assertEquals(
+        "2\t25.0\t25.0\t" + taxonKey + "\tfalse\tfalse\t", lines[2]);
+    assertEquals(
+        "3\t\t\t" + taxonKey + "\tfalse\tfalse\t", lines[3]);
+  }
+
+  @Test
+  @WithMockUser(
+      username = "classify-user",
+      roles = {"USER"})
+  public void testClassifyInvertedRule() throws Exception {
+    int taxonKey = 7070710;
+    // suspicious everywhere except the native range
+    Rule rule =
+        Rule.builder()
+            .taxonKey(taxonKey)
+            .geometry(
+                "POLYGON((-180 -90, 180 -90, 180 90, -180 90, -180 -90), (10 10, 20 10, 20 20, 10 20, 10 10))")
+            .annotation(Rule.ANNOTATION_TYPE.SUSPICIOUS)
+            .rulesetId(1)
+            .projectId(1)
+            .build();
+
+    mockMvc
+        .perform(
+            post("/occurrence/experimental/annotation/rule")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(rule)))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.inverted", is(true)))
+        .andExpect(jsonPath("$.holes").doesNotExist());
+
+    List<Occurrence> occurrences =
+        List.of(
+            new Occurrence(15.0, 15.0, taxonKey, null, null, null),
+            new Occurrence(-30.0, 100.0, taxonKey, null, null, null));
+
+    mockMvc
+        .perform(
+            post("/occurrence/experimental/annotation/rule/classify")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(occurrences)))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0].matches", hasSize(0)))
+        .andExpect(jsonPath("$[1].matches", hasSize(1)))
+        .andExpect(jsonPath("$[1].suspicious", is(true)));
+  }
+
+  @Test
+  @WithMockUser(
+      username = "classify-user",
+      roles = {"USER"})
+  public void testClassifyDescendants() throws Exception {
+    // see taxonomy-parents.tsv: 7070711 is the parent of 7070712 and 7070713
+    int genusKey = 7070711;
+    Rule genusRule =
+        Rule.builder()
+            .taxonKey(genusKey)
+            .includeDescendants(true)
+            .geometry("POLYGON((10 10, 10 20, 20 20, 20 10, 10 10))")
+            .annotation(Rule.ANNOTATION_TYPE.INTRODUCED)
+            .rulesetId(1)
+            .projectId(1)
+            .build();
+    Rule speciesRule =
+        Rule.builder()
+            .taxonKey(7070712)
+            .geometry("POLYGON((10 10, 10 20, 20 20, 20 10, 10 10))")
+            .annotation(Rule.ANNOTATION_TYPE.NATIVE)
+            .rulesetId(1)
+            .projectId(1)
+            .build();
+    for (Rule rule : List.of(genusRule, speciesRule)) {
+      mockMvc
+          .perform(
+              post("/occurrence/experimental/annotation/rule")
+                  .contentType(MediaType.APPLICATION_JSON)
+                  .content(objectMapper.writeValueAsString(rule)))
+          .andExpect(status().isOk());
+    }
+
+    List<Occurrence> occurrences =
+        List.of(
+            // the genus itself
+            new Occurrence(15.0, 15.0, genusKey, null, null, null),
+            // a species of the genus, with its own rule
+            new Occurrence(15.0, 15.0, 7070712, null, null, null),
+            // another species of the genus
+            new Occurrence(15.0, 15.0, 7070713, null, null, null),
+            // the family, to which neither rule applies
+            new Occurrence(15.0, 15.0, 7070700, null, null, null));
+
+    mockMvc
+        .perform(
+            post("/occurrence/experimental/annotation/rule/classify")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(occurrences)))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0].matches", hasSize(1)))
+        .andExpect(jsonPath("$[1].matches", hasSize(2)))
+        .andExpect(jsonPath("$[1].conflict", is(true)))
+        .andExpect(jsonPath("$[2].matches", hasSize(1)))
+        .andExpect(jsonPath("$[2].matches[0].annotation", is("INTRODUCED")))
+        .andExpect(jsonPath("$[3].matches", hasSize(0)));
+  }
+
+  @Test
+  @WithMockUser(
+      username = "test-user",
+      roles = {"USER"})
+  public void testListRulesWithCursor() throws Exception {
+    int taxonKey = 7070714;
+    for (int i = 0; i < 3; i++) {
+      Rule rule =
+          Rule.builder()
+              .taxonKey(taxonKey)
+              .geometry("POLYGON((10 10, 10 20, 20 20, 20 10, 10 10))")
+              .annotation(Rule.ANNOTATION_TYPE.NATIVE)
+              .rulesetId(1)
+              .projectId(1)
+              .build();
+      mockMvc
+          .perform(
+              post("/occurrence/experimental/annotation/rule")
+                  .contentType(MediaType.APPLICATION_JSON)
+                  .content(objectMapper.writeValueAsString(rule)))
+          .andExpect(status().isOk());
+    }
+
+    // a full page has a cursor to the next
+    String cursor =
+        mockMvc
+            .perform(
+                get("/occurrence/experimental/annotation/rule")
+                    .param("taxonKey", String.valueOf(taxonKey))
+                    .param("limit", "2"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$", hasSize(2)))
+            .andExpect(header().exists("X-Next-Cursor"))
+            .andReturn()
+            .getResponse()
+            .getHeader("X-Next-Cursor");
+
+    // the last page does not
+    mockMvc
+        .perform(
+            get("/occurrence/experimental/annotation/rule")
+                .param("taxonKey", String.valueOf(taxonKey))
+                .param("limit", "2")
+                .param("cursor", cursor))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$", hasSize(1)))
+        .andExpect(header().doesNotExist("X-Next-Cursor"));
+  }
+
+  @Test
+  @WithMockUser(
+      username = "test-user",
+      roles = {"USER"})
+  public void testCreateBatch() throws Exception {
+    int taxonKey = 7070720;
+    List<Rule> rules = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      rules.add(
+          Rule.builder()
+              .taxonKey(taxonKey)
+              .geometry("POLYGON((10 10, 10 20, 20 20, 20 10, 10 10))")
+              .annotation(Rule.ANNOTATION_TYPE.SUSPICIOUS)
+              .basisOfRecord(new String[] {"HUMAN_OBSERVATION"})
+              .yearRange("2000,2010")
+              .rulesetId(1)
+              .projectId(1)
+              .build());
+    }
+
+    mockMvc
+        .perform(
+            post("/occurrence/experimental/annotation/rule/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(rules)))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$", hasSize(3)));
+
+    StringBuilder ndjson = new StringBuilder();
+    for (Rule rule : rules.subList(0, 2)) {
+      ndjson.append(objectMapper.writeValueAsString(rule)).append('\n');
+    }
+    mockMvc
+        .perform(
+            post("/occurrence/experimental/annotation/rule/batch")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content(ndjson.toString()))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$", hasSize(2)));
+
+    mockMvc
+        .perform(
+            get("/occurrence/experimental/annotation/rule")
+                .param("taxonKey", String.valueOf(taxonKey))
+                .param("year", "2005"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$", hasSize(5)))
+        .andExpect(jsonPath("$[*].createdBy", everyItem(is("test-user"))));
+  }
+
+  @Test
+  @WithMockUser(
+      username = "test-user",
+      roles = {"USER"})
+  public void testCreateBatchIsAllOrNothing() throws Exception {
+    int taxonKey = 7070721;
+    Rule valid =
+        Rule.builder()
+            .taxonKey(taxonKey)
+            .geometry("POLYGON((10 10, 10 20, 20 20, 20 10, 10 10))")
+            .annotation(Rule.ANNOTATION_TYPE.SUSPICIOUS)
+            .build();
+    Rule missingGeometry =
+        Rule.builder().taxonKey(taxonKey).annotation(Rule.ANNOTATION_TYPE.SUSPICIOUS).build();
+
+    assertThrows(
+        Exception.class,
+        () ->
+            mockMvc.perform(
+                post("/occurrence/experimental/annotation/rule/batch")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(List.of(valid, missingGeometry)))));
+
+    mockMvc
+        .perform(
+            get("/occurrence/experimental/annotation/rule")
+                .param("taxonKey", String.valueOf(taxonKey)))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$", hasSize(0)));
+  }
+
+  @Test
+  @WithMockUser(
+      username = "test-user",
+      roles = {"USER"})
+  public void testCreateRuleWithUnknownBasisOfRecord() throws Exception {
+    Rule rule =
+        Rule.builder()
+            .taxonKey(7070726)
+            .geometry("POLYGON((10 10, 10 20, 20 20, 20 10, 10 10))")
+            .annotation(Rule.ANNOTATION_TYPE.SUSPICIOUS)
+            .basisOfRecord(new String[] {"PRESERVED_SPECIMEN", "NOT_A_BASIS_OF_RECORD"})
+            .build();
+
+    assertThrows(
+        Exception.class,
+        () ->
+            mockMvc.perform(
+                post("/occurrence/experimental/annotation/rule")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(rule))));
+
+    mockMvc
+        .perform(get("/occurrence/experimental/annotation/rule").param("taxonKey", "7070726"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$", hasSize(0)));
+  }
+
+  @Test
+  @WithMockUser(
+      username = "test-user",
+      roles = {"USER"})
+  public void testListRulesSummary() throws Exception {
+    int taxonKey = 7070722;
+    Rule rule =
+        Rule.builder()
+            .taxonKey(taxonKey)
+            .geometry("POLYGON((10 10, 10 20, 20 20, 20 10, 10 10))")
+            .annotation(Rule.ANNOTATION_TYPE.NATIVE)
+            .rulesetId(1)
+            .projectId(1)
+            .build();
+    mockMvc
+        .perform(
+            post("/occurrence/experimental/annotation/rule")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(rule)))
+        .andExpect(status().isOk());
+
+    mockMvc
+        .perform(
+            get("/occurrence/experimental/annotation/rule")
+                .param("taxonKey", String.valueOf(taxonKey))
+                .param("projection", "summary"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$", hasSize(1)))
+        .andExpect(jsonPath("$[0].taxonKey", is(taxonKey)))
+        .andExpect(jsonPath("$[0].annotation", is("NATIVE")))
+        .andExpect(jsonPath("$[0].geometry").doesNotExist())
+        .andExpect(jsonPath("$[0].supportedBy").doesNotExist());
+
+    mockMvc
+        .perform(
+            get("/occurrence/experimental/annotation/rule")
+                .param("taxonKey", String.valueOf(taxonKey)))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0].geometry", notNullValue()))
+        .andExpect(jsonPath("$[0].supportedBy", hasSize(0)));
+  }
+
+  @Test
+  public void testListRulesAsGeoJson() throws Exception {
+    int taxonKey = 7070723;
+    Rule rule =
+        Rule.builder()
+            .taxonKey(taxonKey)
+            .geometry("POLYGON((10 10, 10 20, 20 20, 20 10, 10 10))")
+            .annotation(Rule.ANNOTATION_TYPE.NATIVE)
+            .rulesetId(1)
+            .projectId(1)
+            .build();
+    mockMvc
+        .perform(
+            post("/occurrence/experimental/annotation/rule")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(rule)))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.geometry", is("POLYGON((10 10,10 20,20 20,20 10,10 10))")));
+
+    mockMvc
+        .perform(
+            get("/occurrence/experimental/annotation/rule")
+                .param("taxonKey", String.valueOf(taxonKey))
+                .param("geometryFormat", "geojson"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$", hasSize(1)))
+        .andExpect(jsonPath("$[0].geometry.type", is("Polygon")))
+        .andExpect(jsonPath("$[0].geometry.coordinates", hasSize(1)))
+        .andExpect(jsonPath("$[0].geometry.coordinates[0]", hasSize(5)))
+        .andExpect(jsonPath("$[0].geometry.coordinates[0][1][0]", is(10)))
+        .andExpect(jsonPath("$[0].geometry.coordinates[0][1][1]", is(20)));
+  }
+
+  @Test
+  @WithMockUser(
+      username = "cache-user",
+      roles = {"USER"})
+  public void testGetRuleFollowsWrites() throws Exception {
+    Rule rule =
+        Rule.builder()
+            .taxonKey(7070724)
+            .geometry("POLYGON((10 10, 10 20, 20 20, 20 10, 10 10))")
+            .annotation(Rule.ANNOTATION_TYPE.NATIVE)
+            .rulesetId(1)
+            .projectId(1)
+            .build();
+    String ruleResponse =
+        mockMvc
+            .perform(
+                post("/occurrence/experimental/annotation/rule")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(rule)))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+    int id = objectMapper.readValue(ruleResponse, Rule.class).getId();
+    String path = "/occurrence/experimental/annotation/rule/" + id;
+
+    // each read is answered from the cache, which every write must keep current
+    mockMvc.perform(get(path)).andExpect(jsonPath("$.supportCount", is(0)));
+    mockMvc.perform(post(path + "/support")).andExpect(status().isOk());
+    mockMvc
+        .perform(get(path))
+        .andExpect(jsonPath("$.supportCount", is(1)))
+        .andExpect(jsonPath("$.supportedBy", contains("cache-user")));
+
+    rule.setAnnotation(Rule.ANNOTATION_TYPE.INTRODUCED);
+    mockMvc
+        .perform(
+            put(path)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(rule)))
+        .andExpect(status().isOk());
+    mockMvc.perform(get(path)).andExpect(jsonPath("$.annotation", is("INTRODUCED")));
+
+    mockMvc.perform(delete(path)).andExpect(status().isOk());
+    mockMvc.perform(get(path)).andExpect(jsonPath("$.deleted", notNullValue()));
+  }
+
+  @Test
+  @WithMockUser(
+      username = "rollback-user",
+      roles = {"USER"})
+  public void testRolledBackCreateLeavesNoTrace() {
+    Rule rule =
+        Rule.builder()
+            .taxonKey(7070726)
+            .geometry("POLYGON((10 10, 10 20, 20 20, 20 10, 10 10))")
+            .annotation(Rule.ANNOTATION_TYPE.NATIVE)
+            .rulesetId(1)
+            .projectId(1)
+            .build();
+    int indexed = ruleIndex.size();
+
+    Rule created =
+        new TransactionTemplate(transactionManager)
+            .execute(
+                status -> {
+                  Rule written = ruleController.create(rule);
+                  status.setRollbackOnly();
+                  return written;
+                });
+
+    // the cache and the index are only updated once the write commits
+    assertNull(ruleCache.get(created.getId()), "The rule is not cached");
+    assertEquals(indexed, ruleIndex.size(), "The rule is not indexed");
+  }
+
+  @Test
+  @WithMockUser(
+      username = "etag-user",
+      roles = {"USER"})
+  public void testListRulesNotModified() throws Exception {
+    String path = "/occurrence/experimental/annotation/rule";
+    String etag =
+        mockMvc
+            .perform(get(path).param("rulesetId", "1").param("taxonKey", "7070725"))
+            .andExpect(status().isOk())
+            .andExpect(header().exists("ETag"))
+            .andReturn()
+            .getResponse()
+            .getHeader("ETag");
+    String otherEtag =
+        mockMvc
+            .perform(get(path).param("rulesetId", "7070725"))
+            .andReturn()
+            .getResponse()
+            .getHeader("ETag");
+    mockMvc
+        .perform(
+            get(path)
+                .param("rulesetId", "1")
+                .param("taxonKey", "7070725")
+                .header("If-None-Match", etag))
+        .andExpect(status().isNotModified())
+        .andExpect(content().string(""));
+
+    Rule rule =
+        Rule.builder()
+            .taxonKey(7070725)
+            .geometry("POLYGON((10 10, 10 20, 20 20, 20 10, 10 10))")
+            .annotation(Rule.ANNOTATION_TYPE.NATIVE)
+            .rulesetId(1)
+            .projectId(1)
+            .build();
+    mockMvc
+        .perform(
+            post(path)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(rule)))
+        .andExpect(status().isOk());
+
+    // the write changes the ruleset, but not the data of other rulesets
+    mockMvc
+        .perform(
+            get(path)
+                .param("rulesetId", "1")
+                .param("taxonKey", "7070725")
+                .header("If-None-Match", etag))
+        .andExpect(status().isOk())
+        .andExpect(header().string("ETag", not(etag)))
+        .andExpect(jsonPath("$", hasSize(1)));
+    mockMvc
+        .perform(get(path).param("rulesetId", "7070725").header("If-None-Match", otherEtag))
+        .andExpect(status().isNotModified());
+  }
 }
@@ -0,0 +1,87 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.occurrence.annotation.mapper;
+
+import org.gbif.occurrence.annotation.EmbeddedPostgres;
+import org.gbif.occurrence.annotation.config.TestSecurityConfig;
+
+import java.util.List;
+
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the query shapes of the list filters can use the indexes created by the migrations.
+ * Sequential scans are disabled, as the planner rightly prefers them for the small test tables.
+ */
+@ExtendWith(EmbeddedPostgres.class)
+@SpringBootTest
+@Transactional
+@SpringJUnitConfig
+@Import(TestSecurityConfig.class)
+@TestPropertySource(locations = "classpath:test-application.properties")
+public class ListIndexPlanTest {
+
+  @Autowired private JdbcTemplate jdbcTemplate;
+
+  @DynamicPropertySource
+  static void configureProperties(DynamicPropertyRegistry registry) {
+    PostgreSQLContainer postgres = EmbeddedPostgres.getPostgres();
+    registry.add("spring.datasource.url", postgres::getJdbcUrl);
+    registry.add("spring.datasource.username", postgres::getUsername);
+    registry.add("spring.datasource.password", postgres::getPassword);
+    registry.add("spring.datasource.driver-class-name", postgres::getDriverClassName);
+  }
+
+  @ParameterizedTest
+  @CsvSource(
+      delimiter = '|',
+      value = {
+        "rule_taxon_key_created_id_idx | SELECT * FROM rule WHERE deleted IS NULL AND taxon_key = 1 ORDER BY created DESC, id DESC LIMIT 100 OFFSET 0",
+        "rule_project_id_created_id_idx | SELECT * FROM rule WHERE deleted IS NULL AND project_id = 1 ORDER BY created DESC, id DESC LIMIT 100 OFFSET 0",
+        "rule_ruleset_id_created_id_idx | SELECT * FROM rule WHERE deleted IS NULL AND ruleset_id = 1 ORDER BY created DESC, id DESC LIMIT 100 OFFSET 0",
+        "rule_created_by_created_id_idx | SELECT * FROM rule WHERE deleted IS NULL AND created_by = 'alice' ORDER BY created DESC, id DESC LIMIT 100 OFFSET 0",
+        "rule_dataset_key_idx | SELECT * FROM rule WHERE deleted IS NULL AND dataset_key = 'abc' ORDER BY created DESC, id DESC LIMIT 100 OFFSET 0",
+        "rule_year_bounds_idx | SELECT * FROM rule WHERE deleted IS NULL AND year_bounds @> 1950 ORDER BY created DESC, id DESC LIMIT 100 OFFSET 0",
+        "rule_geom_idx | SELECT * FROM rule WHERE deleted IS NULL AND ST_Intersects(geometry, ST_GeomFromText('POINT(1 1)', 4326)) ORDER BY created DESC, id DESC LIMIT 100 OFFSET 0",
+        "rule_taxon_key_created_id_idx | SELECT * FROM rule WHERE deleted IS NULL AND taxon_key = 1 AND (created, id) < (now(), 1) ORDER BY created DESC, id DESC LIMIT 100 OFFSET 0",
+        "project_created_id_idx | SELECT * FROM project WHERE deleted IS NULL AND (created, id) < (now(), 1) ORDER BY created DESC, id DESC LIMIT 100 OFFSET 0",
+        "ruleset_project_id_created_id_idx | SELECT * FROM ruleset WHERE deleted IS NULL AND project_id = 1 ORDER BY created DESC, id DESC LIMIT 100 OFFSET 0",
+        "comment_rule_id_idx | SELECT * FROM comment WHERE rule_id = 1 AND deleted IS NULL ORDER BY created DESC",
+        "comment_comment_trgm_idx | SELECT * FROM rule WHERE deleted IS NULL AND id IN (SELECT rule_id FROM comment WHERE deleted IS NULL AND comment LIKE '%' || 'outlier' || '%') ORDER BY created DESC, id DESC LIMIT 100 OFFSET 0",
+        "rule_changed_idx | SELECT * FROM rule WHERE GREATEST(created, modified, deleted) >= now()",
+        "rule_metrics_pkey | SELECT * FROM rule_metrics WHERE scope = 'TAXON_KEY' AND key = '1'",
+        "rule_metrics_value_pkey | SELECT * FROM rule_metrics_value WHERE scope = 'ALL' AND key = '' AND kind = 'TAXON_KEY' AND value = '1'"
+      })
+  public void testQueryUsesIndex(String index, String query) {
+    jdbcTemplate.execute("SET LOCAL enable_seqscan = off");
+    List<String> plan = jdbcTemplate.queryForList("EXPLAIN " + query, String.class);
+    assertTrue(
+        plan.stream().anyMatch(line -> line.contains(index)),
+        "Expected " + index + " in the plan of " + query + ": " + String.join("\n", plan));
+  }
+}
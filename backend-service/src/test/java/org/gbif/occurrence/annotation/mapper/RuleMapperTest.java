@@ -15,12 +15,18 @@ package org.gbif.occurrence.annotation.mapper;
 
 import org.gbif.occurrence.annotation.EmbeddedPostgres;
 import org.gbif.occurrence.annotation.config.TestSecurityConfig;
+import org.gbif.occurrence.annotation.model.Comment;
 import org.gbif.occurrence.annotation.model.Rule;
+import org.gbif.occurrence.annotation.model.YearRange;
 
 import java.util.List;
+import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.WKBReader;
+import org.locationtech.jts.io.WKTReader;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Import;
@@ -42,6 +48,7 @@ import static org.junit.jupiter.api.Assertions.*;
 public class RuleMapperTest {
 
   @Autowired private RuleMapper ruleMapper;
+  @Autowired private CommentMapper commentMapper;
 
   @DynamicPropertySource
   static void configureProperties(DynamicPropertyRegistry registry) {
@@ -68,9 +75,7 @@ public class RuleMapperTest {
 
   @Test
   public void testCreateRuleWithArrayBasisOfRecord() {
-    Rule rule = createTestRule();
-
-    ruleMapper.create(rule);
+    Rule rule = ruleMapper.create(createTestRule());
 
     assertNotNull(rule.getId(), "Rule ID should be generated");
     assertTrue(rule.getId() > 0, "Rule ID should be positive");
@@ -81,7 +86,7 @@ public class RuleMapperTest {
     Rule rule = createTestRule();
     rule.setBasisOfRecord(null);
 
-    ruleMapper.create(rule);
+    rule = ruleMapper.create(rule);
 
     assertNotNull(rule.getId(), "Rule ID should be generated");
     assertTrue(rule.getId() > 0, "Rule ID should be positive");
@@ -92,7 +97,7 @@ public class RuleMapperTest {
     Rule rule = createTestRule();
     rule.setBasisOfRecord(new String[] {});
 
-    ruleMapper.create(rule);
+    rule = ruleMapper.create(rule);
 
     assertNotNull(rule.getId(), "Rule ID should be generated");
     assertTrue(rule.getId() > 0, "Rule ID should be positive");
@@ -103,7 +108,7 @@ public class RuleMapperTest {
     Rule rule = createTestRule();
     rule.setBasisOfRecord(new String[] {"PRESERVED_SPECIMEN"});
 
-    ruleMapper.create(rule);
+    rule = ruleMapper.create(rule);
 
     assertNotNull(rule.getId(), "Rule ID should be generated");
     assertTrue(rule.getId() > 0, "Rule ID should be positive");
@@ -112,15 +117,17 @@ public class RuleMapperTest {
   @Test
   public void testGetRuleWithArrayBasisOfRecord() {
     Rule rule = createTestRule();
-    ruleMapper.create(rule);
+    Rule created = ruleMapper.create(rule);
 
-    Rule retrieved = ruleMapper.get(rule.getId());
+    Rule retrieved = ruleMapper.get(created.getId());
 
     assertNotNull(retrieved, "Retrieved rule should not be null");
-    assertEquals(rule.getId(), retrieved.getId());
+    assertEquals(retrieved, created, "The insert returns the rule as written");
+    assertEquals(created.getId(), retrieved.getId());
     assertEquals(rule.getTaxonKey(), retrieved.getTaxonKey());
     assertEquals(rule.getDatasetKey(), retrieved.getDatasetKey());
-    assertEquals(rule.getGeometry(), retrieved.getGeometry());
+    // geometries are stored in binary and rendered as normalized WKT
+    assertEquals("POLYGON((0 0,0 1,1 1,1 0,0 0))", retrieved.getGeometry());
     assertEquals(rule.getAnnotation(), retrieved.getAnnotation());
     assertArrayEquals(rule.getBasisOfRecord(), retrieved.getBasisOfRecord());
     assertEquals(rule.getYearRange(), retrieved.getYearRange());
@@ -161,8 +168,12 @@ public class RuleMapperTest {
             null,
             null,
             null,
+            null,
             100,
-            0);
+            0,
+            null,
+            false,
+            null);
 
     assertEquals(2, results.size(), "Should find 2 rules with PRESERVED_SPECIMEN");
 
@@ -181,8 +192,12 @@ public class RuleMapperTest {
             null,
             null,
             null,
+            null,
             100,
-            0);
+            0,
+            null,
+            false,
+            null);
 
     assertEquals(
         3, results.size(), "Should find 3 rules with PRESERVED_SPECIMEN or MACHINE_OBSERVATION");
@@ -202,8 +217,12 @@ public class RuleMapperTest {
             null,
             null,
             null,
+            null,
             100,
-            0);
+            0,
+            null,
+            false,
+            null);
 
     assertEquals(0, results.size(), "Should find 0 rules with NON_EXISTENT");
   }
@@ -222,7 +241,24 @@ public class RuleMapperTest {
     // Test listing without filter
     List<Rule> results =
         ruleMapper.list(
-            null, null, null, null, null, null, null, null, null, null, null, null, 100, 0);
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            100,
+            0,
+            null,
+            false,
+            null);
 
     assertTrue(results.size() >= 2, "Should find at least 2 rules");
   }
@@ -247,8 +283,12 @@ public class RuleMapperTest {
             null,
             null,
             null,
+            null,
             100,
-            0);
+            0,
+            null,
+            false,
+            null);
 
     assertTrue(results.size() >= 1, "Should find rules when no filter is applied");
   }
@@ -288,8 +328,12 @@ public class RuleMapperTest {
             null,
             null,
             null,
+            null,
             100,
-            0);
+            0,
+            null,
+            false,
+            null);
 
     assertEquals(2, results.size(), "Should find 2 rules with partial overlap");
 
@@ -308,8 +352,12 @@ public class RuleMapperTest {
             null,
             null,
             null,
+            null,
             100,
-            0);
+            0,
+            null,
+            false,
+            null);
 
     assertEquals(1, results.size(), "Should find 1 rule with MACHINE_OBSERVATION");
   }
@@ -340,7 +388,24 @@ public class RuleMapperTest {
     // Test filtering by specific creator - alice should have 2 rules
     List<Rule> results =
         ruleMapper.list(
-            null, null, null, null, null, null, null, null, "alice", null, null, null, 100, 0);
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            "alice",
+            null,
+            null,
+            null,
+            100,
+            0,
+            null,
+            false,
+            null);
 
     assertEquals(2, results.size(), "Should find 2 rules created by alice");
     assertTrue(
@@ -350,7 +415,24 @@ public class RuleMapperTest {
     // Test filtering by specific creator - bob should have 1 rule
     results =
         ruleMapper.list(
-            null, null, null, null, null, null, null, null, "bob", null, null, null, 100, 0);
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            "bob",
+            null,
+            null,
+            null,
+            100,
+            0,
+            null,
+            false,
+            null);
 
     assertEquals(1, results.size(), "Should find 1 rule created by bob");
     assertEquals("bob", results.get(0).getCreatedBy(), "Returned rule should be created by bob");
@@ -358,7 +440,24 @@ public class RuleMapperTest {
     // Test filtering by specific creator - charlie should have 1 rule
     results =
         ruleMapper.list(
-            null, null, null, null, null, null, null, null, "charlie", null, null, null, 100, 0);
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            "charlie",
+            null,
+            null,
+            null,
+            100,
+            0,
+            null,
+            false,
+            null);
 
     assertEquals(1, results.size(), "Should find 1 rule created by charlie");
     assertEquals(
@@ -379,15 +478,36 @@ public class RuleMapperTest {
             null,
             null,
             null,
+            null,
             100,
-            0);
+            0,
+            null,
+            false,
+            null);
 
     assertEquals(0, results.size(), "Should find 0 rules created by nonexistent user");
 
     // Test without createdBy filter - should return all rules
     results =
         ruleMapper.list(
-            null, null, null, null, null, null, null, null, null, null, null, null, 100, 0);
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            100,
+            0,
+            null,
+            false,
+            null);
 
     assertTrue(
         results.size() >= 4, "Should find at least 4 rules when no createdBy filter is applied");
@@ -414,7 +534,24 @@ public class RuleMapperTest {
     // Test combining taxonKey and createdBy filters
     List<Rule> results =
         ruleMapper.list(
-            12345, null, null, null, null, null, null, null, "alice", null, null, null, 100, 0);
+            12345,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            "alice",
+            null,
+            null,
+            null,
+            100,
+            0,
+            null,
+            false,
+            null);
 
     assertEquals(1, results.size(), "Should find 1 rule with taxonKey=12345 and createdBy=alice");
     assertEquals(
@@ -427,7 +564,24 @@ public class RuleMapperTest {
     // Test with filters that should return no results
     results =
         ruleMapper.list(
-            67890, null, null, null, null, null, null, null, "bob", null, null, null, 100, 0);
+            67890,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            "bob",
+            null,
+            null,
+            null,
+            100,
+            0,
+            null,
+            false,
+            null);
 
     assertEquals(0, results.size(), "Should find 0 rules with taxonKey=67890 and createdBy=bob");
   }
@@ -439,7 +593,7 @@ public class RuleMapperTest {
     rule.setBasisOfRecordNegated(true);
     rule.setTaxonKey(99999);
 
-    ruleMapper.create(rule);
+    rule = ruleMapper.create(rule);
 
     assertNotNull(rule.getId(), "Rule should have an ID after creation");
     assertTrue(rule.getBasisOfRecordNegated(), "Rule should have basisOfRecordNegated=true");
@@ -453,7 +607,7 @@ public class RuleMapperTest {
     // Don't explicitly set basisOfRecordNegated - should default to false
     rule.setTaxonKey(88888);
 
-    ruleMapper.create(rule);
+    rule = ruleMapper.create(rule);
 
     assertNotNull(rule.getId(), "Rule should have an ID after creation");
     assertFalse(
@@ -479,7 +633,24 @@ public class RuleMapperTest {
     // Test filtering by negated=true
     List<Rule> results =
         ruleMapper.list(
-            null, null, null, null, null, true, null, null, null, null, null, null, 100, 0);
+            null,
+            null,
+            null,
+            null,
+            null,
+            true,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            100,
+            0,
+            null,
+            false,
+            null);
 
     assertFalse(results.isEmpty(), "Should find at least one negated rule");
     assertTrue(
@@ -506,7 +677,24 @@ public class RuleMapperTest {
     // Test filtering by negated=false
     List<Rule> results =
         ruleMapper.list(
-            null, null, null, null, null, false, null, null, null, null, null, null, 100, 0);
+            null,
+            null,
+            null,
+            null,
+            null,
+            false,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            100,
+            0,
+            null,
+            false,
+            null);
 
     assertFalse(results.isEmpty(), "Should find at least one non-negated rule");
     assertTrue(
@@ -538,8 +726,12 @@ public class RuleMapperTest {
             null,
             null,
             null,
+            null,
             100,
-            0);
+            0,
+            null,
+            false,
+            null);
 
     assertFalse(results.isEmpty(), "Should find at least one rule matching criteria");
     Rule foundRule = results.get(0);
@@ -569,7 +761,24 @@ public class RuleMapperTest {
     // Test without negated filter - should return both types
     List<Rule> results =
         ruleMapper.list(
-            null, null, null, null, null, null, null, null, null, null, null, null, 100, 0);
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            100,
+            0,
+            null,
+            false,
+            null);
 
     assertFalse(results.isEmpty(), "Should find rules");
 
@@ -590,13 +799,44 @@ public class RuleMapperTest {
   public void testGeometryFilter() {
     // Create a test rule with a specific geometry
     Rule rule = createTestRule();
+    rule.setTaxonKey(55551);
     String testGeometry = "POLYGON((0 0, 10 0, 10 10, 0 10, 0 0))";
     rule.setGeometry(testGeometry);
-    ruleMapper.create(rule);
+    rule = ruleMapper.create(rule);
 
-    // Test exact geometry match
+    // Test a geometry overlapping the rule
+    String overlappingGeometry = "POLYGON((5 5, 15 5, 15 15, 5 15, 5 5))";
     List<Rule> results =
         ruleMapper.list(
+            55551,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            overlappingGeometry, // geometry parameter
+            null,
+            null,
+            null,
+            null,
+            100,
+            0,
+            null,
+            false,
+            null);
+
+    assertEquals(1, results.size(), "Should find the rule intersecting the geometry");
+    assertEquals(
+        "POLYGON((0 0,10 0,10 10,0 10,0 0))",
+        results.get(0).getGeometry(),
+        "Geometry should be returned as WKT");
+
+    // Test a point within the rule
+    results =
+        ruleMapper.list(
+            55551,
             null,
             null,
             null,
@@ -604,21 +844,24 @@ public class RuleMapperTest {
             null,
             null,
             null,
-            testGeometry, // exact geometry parameter
+            "POINT(2 3)",
             null,
             null,
             null,
             null,
             100,
-            0);
+            0,
+            null,
+            false,
+            null);
 
-    assertEquals(1, results.size(), "Should find exactly 1 rule with the exact geometry");
-    assertEquals(testGeometry, results.get(0).getGeometry(), "Geometry should match exactly");
+    assertEquals(1, results.size(), "Should find the rule containing the point");
 
-    // Test non-matching geometry - this should return no results
+    // Test non-intersecting geometry - this should return no results
     String differentGeometry = "POLYGON((20 20, 30 20, 30 30, 20 30, 20 20))";
     List<Rule> noResults =
         ruleMapper.list(
+            55551,
             null,
             null,
             null,
@@ -632,14 +875,218 @@ public class RuleMapperTest {
             null,
             null,
             100,
-            0);
+            0,
+            null,
+            false,
+            null);
 
-    assertEquals(0, noResults.size(), "Should find no rules with different geometry");
+    assertEquals(0, noResults.size(), "Should find no rules with a disjoint geometry");
 
     // Clean up
     ruleMapper.delete(rule.getId(), "testuser");
   }
 
+  @Test
+  public void testListRulesWithYearFilter() {
+    Rule closed = createTestRule();
+    closed.setTaxonKey(66661);
+    closed.setYearRange("1900,1950");
+    closed.setYearBounds(YearRange.toBounds(closed.getYearRange()));
+    ruleMapper.create(closed);
+
+    Rule openStart = createTestRule();
+    openStart.setTaxonKey(66662);
+    openStart.setYearRange("*,1920");
+    openStart.setYearBounds(YearRange.toBounds(openStart.getYearRange()));
+    ruleMapper.create(openStart);
+
+    Rule noRange = createTestRule();
+    noRange.setTaxonKey(66663);
+    noRange.setYearRange(null);
+    ruleMapper.create(noRange);
+
+    // both bounds are inclusive
+    List<Integer> results = listTaxonKeysForYear(1920);
+    assertTrue(results.contains(66661) && results.contains(66662), "Both ranges contain 1920");
+    assertFalse(results.contains(66663), "Rules without a yearRange contain no year");
+
+    results = listTaxonKeysForYear(1950);
+    assertTrue(results.contains(66661), "1950 is the inclusive upper bound");
+    assertFalse(results.contains(66662), "1950 is after the open start range");
+
+    results = listTaxonKeysForYear(1800);
+    assertTrue(results.contains(66662), "The open start range contains 1800");
+    assertFalse(results.contains(66661), "1800 is before the closed range");
+  }
+
+  @Test
+  public void testSupportAndContest() {
+    Rule rule = ruleMapper.create(createTestRule());
+
+    ruleMapper.vote(rule.getId(), "alice", Rule.VOTE_TYPE.SUPPORT);
+    ruleMapper.vote(rule.getId(), "bob", Rule.VOTE_TYPE.SUPPORT);
+    ruleMapper.vote(rule.getId(), "carol", Rule.VOTE_TYPE.CONTEST);
+    Rule voted = ruleMapper.vote(rule.getId(), "alice", Rule.VOTE_TYPE.SUPPORT); // counts once
+    assertEquals(2, voted.getSupportCount());
+    assertEquals(1, voted.getContestCount());
+    assertNull(voted.getSupportedBy(), "The users voting are read with get");
+
+    Rule stored = ruleMapper.get(rule.getId());
+    assertArrayEquals(new String[] {"alice", "bob"}, stored.getSupportedBy());
+    assertArrayEquals(new String[] {"carol"}, stored.getContestedBy());
+
+    // contest and support are mutually exclusive
+    voted = ruleMapper.vote(rule.getId(), "alice", Rule.VOTE_TYPE.CONTEST);
+    assertEquals(1, voted.getSupportCount());
+    assertEquals(2, voted.getContestCount());
+    stored = ruleMapper.get(rule.getId());
+    assertArrayEquals(new String[] {"bob"}, stored.getSupportedBy());
+    assertArrayEquals(new String[] {"alice", "carol"}, stored.getContestedBy());
+
+    // removing a vote of the other type changes nothing
+    voted = ruleMapper.unvote(rule.getId(), "alice", Rule.VOTE_TYPE.SUPPORT);
+    assertEquals(2, voted.getContestCount());
+
+    ruleMapper.unvote(rule.getId(), "alice", Rule.VOTE_TYPE.CONTEST);
+    voted = ruleMapper.unvote(rule.getId(), "carol", Rule.VOTE_TYPE.CONTEST);
+    assertEquals(1, voted.getSupportCount());
+    assertEquals(0, voted.getContestCount());
+
+    // the returned counts are those stored
+    stored = ruleMapper.get(rule.getId());
+    assertArrayEquals(new String[] {"bob"}, stored.getSupportedBy());
+    assertEquals(0, stored.getContestedBy().length);
+    assertEquals(voted.getSupportCount(), stored.getSupportCount());
+    assertEquals(voted.getContestCount(), stored.getContestCount());
+
+    assertNull(ruleMapper.vote(-1, "alice", Rule.VOTE_TYPE.SUPPORT), "No such rule");
+  }
+
+  @Test
+  public void testListRulesWithCommentFilter() {
+    Rule discussed = createTestRule();
+    discussed.setTaxonKey(77771);
+    discussed = ruleMapper.create(discussed);
+    Rule other = createTestRule();
+    other.setTaxonKey(77772);
+    other = ruleMapper.create(other);
+
+    // two matching comments on a rule must not list it twice
+    for (String text : new String[] {"Looks like an outlier", "Another outlier here"}) {
+      commentMapper.create(
+          Comment.builder().ruleId(discussed.getId()).comment(text).createdBy("alice").build());
+    }
+    Comment deleted =
+        Comment.builder().ruleId(other.getId()).comment("outlier").createdBy("alice").build();
+    deleted = commentMapper.create(deleted);
+    commentMapper.delete(deleted.getId(), "alice");
+
+    List<Rule> results =
+        ruleMapper.list(
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            "outlier",
+            1000,
+            0,
+            null,
+            false,
+            null);
+    List<Integer> taxonKeys = results.stream().map(Rule::getTaxonKey).collect(Collectors.toList());
+    assertEquals(1, taxonKeys.stream().filter(k -> k == 77771).count(), "Listed once");
+    assertFalse(taxonKeys.contains(77772), "Deleted comments are not searched");
+  }
+
+  @Test
+  public void testWritesReturnTheRule() {
+    Rule rule = ruleMapper.create(createTestRule());
+
+    rule.setTaxonKey(55553);
+    rule.setModifiedBy("bob");
+    Rule updated = ruleMapper.update(rule);
+    assertEquals(55553, updated.getTaxonKey());
+    assertNotNull(updated.getModified(), "The update returns the rule as written");
+    assertEquals(ruleMapper.get(rule.getId()), updated);
+
+    Rule deleted = ruleMapper.delete(rule.getId(), "bob");
+    assertNotNull(deleted.getDeleted());
+    assertEquals("bob", deleted.getDeletedBy());
+    assertNull(ruleMapper.delete(rule.getId(), "bob"), "Nothing is written twice");
+    assertNull(ruleMapper.update(rule), "Deleted rules are not updated");
+  }
+
+  @Test
+  public void testGeometryFormats() throws Exception {
+    Rule rule = createTestRule();
+    rule.setTaxonKey(55552);
+    rule = ruleMapper.create(rule);
+
+    List<Rule> results =
+        ruleMapper.list(
+            55552,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            100,
+            0,
+            null,
+            false,
+            Rule.GEOMETRY_FORMAT.GEOJSON);
+    assertEquals(1, results.size());
+    assertEquals(
+        "{\"type\":\"Polygon\",\"coordinates\":[[[0,0],[0,1],[1,1],[1,0],[0,0]]]}",
+        results.get(0).getGeometry());
+    assertNull(results.get(0).getGeometryWkb(), "WKB is only read for the matcher");
+
+    // the matcher reads the stored geometry as WKB, without a text parse
+    Rule retrieved = ruleMapper.get(rule.getId());
+    Geometry geometry = new WKBReader().read(retrieved.getGeometryWkb());
+    assertTrue(geometry.equalsExact(new WKTReader().read(rule.getGeometry())));
+    assertNull(retrieved.getHoles());
+  }
+
+  private List<Integer> listTaxonKeysForYear(int year) {
+    List<Rule> rules =
+        ruleMapper.list(
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            year,
+            null,
+            null,
+            null,
+            null,
+            null,
+            1000,
+            0,
+            null,
+            false,
+            null);
+    return rules.stream().map(Rule::getTaxonKey).collect(Collectors.toList());
+  }
+
   // @Test - Temporarily disabled due to compilation issues
   // TODO: Re-enable when null filtering is fully implemented
   /*
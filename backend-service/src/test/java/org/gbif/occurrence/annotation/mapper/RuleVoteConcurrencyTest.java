@@ -0,0 +1,115 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.occurrence.annotation.mapper;
+
+import org.gbif.occurrence.annotation.EmbeddedPostgres;
+import org.gbif.occurrence.annotation.config.TestSecurityConfig;
+import org.gbif.occurrence.annotation.model.Rule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Votes on a single rule from many threads. This is deliberately not transactional, so that each
+ * vote commits on its own as it does when called from the controller.
+ */
+@ExtendWith(EmbeddedPostgres.class)
+@SpringBootTest
+@Import(TestSecurityConfig.class)
+@TestPropertySource(locations = "classpath:test-application.properties")
+public class RuleVoteConcurrencyTest {
+  private static final int THREADS = 16;
+  private static final int VOTES_PER_THREAD = 200;
+  private static final String[] USERS = {"u1", "u2", "u3", "u4", "u5"};
+
+  @Autowired private RuleMapper ruleMapper;
+
+  @DynamicPropertySource
+  static void configureProperties(DynamicPropertyRegistry registry) {
+    PostgreSQLContainer postgres = EmbeddedPostgres.getPostgres();
+    registry.add("spring.datasource.url", postgres::getJdbcUrl);
+    registry.add("spring.datasource.username", postgres::getUsername);
+    registry.add("spring.datasource.password", postgres::getPassword);
+    registry.add("spring.datasource.driver-class-name", postgres::getDriverClassName);
+  }
+
+  @Test
+  public void testConcurrentVotes() throws Exception {
+    Rule rule =
+        Rule.builder()
+            .taxonKey(8080801)
+            .geometry("POLYGON((0 0, 0 1, 1 1, 1 0, 0 0))")
+            .annotation(Rule.ANNOTATION_TYPE.NATIVE)
+            .createdBy("test-user")
+            .build();
+    int id = ruleMapper.create(rule).getId();
+
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < THREADS; t++) {
+        futures.add(
+            executor.submit(
+                () -> {
+                  ThreadLocalRandom random = ThreadLocalRandom.current();
+                  for (int i = 0; i < VOTES_PER_THREAD; i++) {
+                    String user = USERS[random.nextInt(USERS.length)];
+                    Rule.VOTE_TYPE type = Rule.VOTE_TYPE.values()[random.nextInt(2)];
+                    Rule voted =
+                        random.nextBoolean()
+                            ? ruleMapper.vote(id, user, type)
+                            : ruleMapper.unvote(id, user, type);
+                    assertNotNull(voted);
+                  }
+                }));
+      }
+      for (Future<?> future : futures) {
+        future.get(); // rethrows any failure
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    Rule voted = ruleMapper.get(id);
+    Set<String> supporters = new HashSet<>(Arrays.asList(voted.getSupportedBy()));
+    Set<String> contesters = new HashSet<>(Arrays.asList(voted.getContestedBy()));
+    assertEquals(voted.getSupportedBy().length, supporters.size(), "Each user supports once");
+    assertEquals(voted.getContestedBy().length, contesters.size(), "Each user contests once");
+    supporters.retainAll(contesters);
+    assertTrue(supporters.isEmpty(), "No user both supports and contests the rule");
+    assertEquals(voted.getSupportedBy().length, voted.getSupportCount());
+    assertEquals(voted.getContestedBy().length, voted.getContestCount());
+
+    ruleMapper.delete(id, "test-user");
+  }
+}
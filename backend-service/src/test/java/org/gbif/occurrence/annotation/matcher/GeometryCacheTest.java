@@ -0,0 +1,177 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.occurrence.annotation.matcher;
+
+import org.gbif.occurrence.annotation.model.Rule;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.io.WKBWriter;
+import org.locationtech.jts.io.WKTReader;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GeometryCacheTest {
+  // room for four squares of five vertices each
+  private static final long MAX_VERTICES = 20;
+
+  private SimpleMeterRegistry meterRegistry;
+  // the WKB of each rule, as held in the database
+  private Map<Integer, byte[]> stored;
+  private GeometryCache geometryCache;
+
+  @BeforeEach
+  public void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    stored = new HashMap<>();
+    geometryCache = new GeometryCache(meterRegistry, MAX_VERTICES, stored::get);
+  }
+
+  @Test
+  public void testMetricsRegistered() {
+    assertNotNull(meterRegistry.find("cache.size").tag("cache", "ruleGeometry").gauge());
+    assertNotNull(
+        meterRegistry
+            .find("cache.gets")
+            .tags("cache", "ruleGeometry", "result", "hit")
+            .functionCounter());
+    assertNotNull(
+        meterRegistry
+            .find("cache.gets")
+            .tags("cache", "ruleGeometry", "result", "miss")
+            .functionCounter());
+    assertNotNull(
+        meterRegistry.find("cache.evictions").tag("cache", "ruleGeometry").functionCounter());
+    assertNotNull(
+        meterRegistry
+            .find("cache.eviction.weight")
+            .tag("cache", "ruleGeometry")
+            .functionCounter());
+  }
+
+  @Test
+  public void testGetParsesOnce() throws Exception {
+    CompiledRule rule = compile(1, 1000, square(0));
+    assertTrue(geometryCache.get(rule).contains(point(0.5)));
+    assertTrue(geometryCache.get(rule).contains(point(0.5)));
+    assertEquals(1, gets("miss"));
+    assertEquals(1, gets("hit"));
+  }
+
+  @Test
+  public void testEditedRuleMissesCache() throws Exception {
+    CompiledRule rule = compile(1, 1000, square(0));
+    geometryCache.get(rule);
+
+    // the same rule, modified to cover another square
+    CompiledRule edited = compile(1, 2000, square(10));
+    assertTrue(geometryCache.get(edited).contains(point(10.5)));
+    assertFalse(geometryCache.get(edited).contains(point(0.5)));
+    assertEquals(2, gets("miss"));
+  }
+
+  @Test
+  public void testInvalidate() throws Exception {
+    CompiledRule rule = compile(1, 1000, square(0));
+    geometryCache.put(rule, square(0));
+    geometryCache.invalidate(rule);
+    assertTrue(geometryCache.get(rule).contains(point(0.5)));
+    assertEquals(1, gets("miss"));
+    assertEquals(0, gets("hit"));
+  }
+
+  @Test
+  public void testDeletedRule() throws Exception {
+    CompiledRule rule = compile(1, 1000, square(0));
+    stored.remove(1);
+    assertNull(geometryCache.get(rule));
+    assertFalse(rule.matches(null, new int[0], ~0, point(0.5), geometryCache));
+  }
+
+  @Test
+  public void testEvictionByVertices() throws Exception {
+    for (int id = 1; id <= 4; id++) {
+      geometryCache.get(compile(id, 1000, square(id * 10)));
+    }
+    geometryCache.cleanUp();
+    assertEquals(4, size());
+    assertEquals(0, evicted("cache.evictions"));
+
+    // a fifth square exceeds the vertices allowed, though there are only five entries
+    geometryCache.get(compile(5, 1000, square(50)));
+    geometryCache.cleanUp();
+    assertEquals(4, size());
+    assertEquals(1, evicted("cache.evictions"));
+    assertEquals(5, evicted("cache.eviction.weight"));
+
+    // a geometry with more vertices than allowed is not kept at all
+    Geometry circle = point(0).buffer(1, 6);
+    assertEquals(25, circle.getNumPoints());
+    geometryCache.get(compile(6, 1000, circle));
+    geometryCache.cleanUp();
+    assertEquals(2, evicted("cache.evictions"));
+    assertEquals(30, evicted("cache.eviction.weight"));
+  }
+
+  /** Stores the geometry of the rule and compiles it, as a write and the index do. */
+  private CompiledRule compile(int id, long modified, Geometry geometry) {
+    byte[] wkb = new WKBWriter().write(geometry);
+    stored.put(id, wkb);
+    Rule rule =
+        Rule.builder()
+            .id(id)
+            .geometryWkb(wkb)
+            .annotation(Rule.ANNOTATION_TYPE.NATIVE)
+            .modified(new Date(modified))
+            .build();
+    return new CompiledRule(rule, geometry.getEnvelopeInternal());
+  }
+
+  private static Geometry square(double corner) throws Exception {
+    double far = corner + 1;
+    return new WKTReader(GeometryCache.GEOMETRY_FACTORY)
+        .read(
+            String.format(
+                "POLYGON((%1$s %1$s, %1$s %2$s, %2$s %2$s, %2$s %1$s, %1$s %1$s))", corner, far));
+  }
+
+  private static Point point(double xy) {
+    return GeometryCache.GEOMETRY_FACTORY.createPoint(new Coordinate(xy, xy));
+  }
+
+  private double gets(String result) {
+    return meterRegistry
+        .get("cache.gets")
+        .tags("cache", "ruleGeometry", "result", result)
+        .functionCounter()
+        .count();
+  }
+
+  private double evicted(String name) {
+    return meterRegistry.get(name).tag("cache", "ruleGeometry").functionCounter().count();
+  }
+
+  private double size() {
+    return meterRegistry.get("cache.size").tag("cache", "ruleGeometry").gauge().value();
+  }
+}